@@ -47,16 +47,17 @@ public class ShopTraderPlugin extends JavaPlugin {
 
         // GUI and Trader
         this.traderGUI = new TraderGUI(this, economyService, catalog, dropManager, questManager, sellManager);
-        this.traderManager = new TraderManager(this, traderGUI);
+        this.traderManager = new TraderManager(this, traderGUI, dropManager);
 
-        // Load persisted trader if any
+        // Load persisted traders if any
         this.traderManager.loadFromConfig();
 
-        // Start rotation tasks
-        this.dropManager.start();
+        // Start rotations: one drop per trader, all driven by a single scheduler task
+        this.dropManager.start(traderManager.getTraderIds());
 
-        // Periodically tick GUI to refresh timers and cycle content
+        // Periodically tick rotations and GUI to refresh timers and cycle content
         Bukkit.getScheduler().runTaskTimer(this, () -> {
+            if (this.dropManager != null) this.dropManager.tick();
             if (this.sellManager != null) this.sellManager.tick();
             if (this.traderGUI != null) this.traderGUI.tick();
         }, 20L, 20L);
@@ -77,7 +78,9 @@ public class ShopTraderPlugin extends JavaPlugin {
     public void onDisable() {
         // Stop rotation
         if (this.dropManager != null) this.dropManager.stop();
-        // Persist trader state
+        // Flush dynamic price journal
+        if (this.catalog != null) this.catalog.shutdown();
+        // Persist traders
         this.traderManager.saveToConfig();
         // Save quests data
         if (this.questManager != null) this.questManager.saveData();
@@ -87,13 +90,24 @@ public class ShopTraderPlugin extends JavaPlugin {
 
     public void reloadAll() {
         reloadConfig();
-        if (this.catalog != null) this.catalog.reload();
+        if (this.catalog == null) {
+            finishReload();
+            return;
+        }
+        // Catalog is rebuilt off the main thread and swapped in atomically; dependents reload afterwards
+        this.catalog.reloadAsync(this::finishReload);
+    }
+
+    private void finishReload() {
         if (this.sellManager != null) this.sellManager.reloadConfig();
         if (this.dropManager != null) {
             this.dropManager.stop();
-            this.dropManager.start();
+            this.dropManager.start(traderManager.getTraderIds());
+        }
+        if (this.traderGUI != null) {
+            this.traderGUI.reloadSettings();
+            this.traderGUI.refreshSellAll();
         }
-        if (this.traderGUI != null) this.traderGUI.refreshSellAll();
         // Notify all online players about shop reload
         Bukkit.getOnlinePlayers().forEach(p -> p.sendMessage(org.bukkit.ChatColor.AQUA + "ShopTrader перезавантажено. Ротації та ціни могли змінитися."));
         getLogger().info("Конфігурацію ShopTrader перезавантажено.");
@@ -107,4 +121,12 @@ public class ShopTraderPlugin extends JavaPlugin {
         return sellManager;
     }
 
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    public DropManager getDropManager() {
+        return dropManager;
+    }
+
 }
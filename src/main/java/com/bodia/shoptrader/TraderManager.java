@@ -1,48 +1,73 @@
 package com.bodia.shoptrader;
 
 import com.bodia.shoptrader.gui.TraderGUI;
+import com.bodia.shoptrader.shop.DropManager;
 import org.bukkit.*;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.WanderingTrader;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.util.Vector;
 
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.regex.Pattern;
 
+/**
+ * Registry of placed traders, persisted under {@code traders.<id>}. Each trader entity carries its id
+ * in its PDC, so a click resolves straight to the trader (and its rotation) without scanning the registry.
+ */
 public class TraderManager {
 
     public static final String PDC_KEY = "is_shop_trader";
+    public static final String PDC_ID_KEY = "shop_trader_id";
+    // Ids become config path segments (traders.<id>) and CSV fields, so keep them to a safe alphabet
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private static final class TraderRecord {
+        final String id;
+        UUID uuid;
+        Location location;
+        TraderRecord(String id) { this.id = id; }
+    }
 
     private final Plugin plugin;
     private final TraderGUI gui;
+    private final DropManager dropManager;
 
-    private UUID traderUuid;
-    private Location traderLocation;
+    private final Map<String, TraderRecord> traders = new LinkedHashMap<>();
 
     private final NamespacedKey key;
+    private final NamespacedKey idKey;
 
-    public TraderManager(Plugin plugin, TraderGUI gui) {
+    public TraderManager(Plugin plugin, TraderGUI gui, DropManager dropManager) {
         this.plugin = plugin;
         this.gui = gui;
+        this.dropManager = dropManager;
         this.key = new NamespacedKey(plugin, PDC_KEY);
+        this.idKey = new NamespacedKey(plugin, PDC_ID_KEY);
     }
 
-    public Optional<WanderingTrader> getTrader() {
-        if (traderUuid != null) {
-            for (World world : Bukkit.getWorlds()) {
-                Entity byId = world.getEntities().stream().filter(e -> traderUuid.equals(e.getUniqueId())).findFirst().orElse(null);
-                if (byId instanceof WanderingTrader) return Optional.of((WanderingTrader) byId);
-            }
+    /** Whether {@code id} can be used as a trader id: 1-32 letters, digits, '_' or '-'. */
+    public static boolean isValidId(String id) {
+        return id != null && ID_PATTERN.matcher(id).matches();
+    }
+
+    public Set<String> getTraderIds() {
+        return Collections.unmodifiableSet(traders.keySet());
+    }
+
+    public Optional<WanderingTrader> getTrader(String id) {
+        TraderRecord rec = traders.get(id);
+        if (rec != null && rec.uuid != null) {
+            Entity byId = Bukkit.getEntity(rec.uuid);
+            if (byId instanceof WanderingTrader) return Optional.of((WanderingTrader) byId);
         }
         // Fallback search by PDC mark
         for (World world : Bukkit.getWorlds()) {
             for (Entity e : world.getEntitiesByClass(WanderingTrader.class)) {
-                if (isOurTrader(e)) {
+                if (id.equals(traderIdOf(e))) {
                     return Optional.of((WanderingTrader) e);
                 }
             }
@@ -51,17 +76,24 @@ public class TraderManager {
     }
 
     public boolean isOurTrader(Entity e) {
+        return traderIdOf(e) != null;
+    }
+
+    /** Trader id stored on the entity, or null if it is not one of ours. Entities from before ids existed map to the default trader. */
+    public String traderIdOf(Entity e) {
         PersistentDataContainer pdc = e.getPersistentDataContainer();
-        return pdc.has(key, PersistentDataType.BYTE);
+        String id = pdc.get(idKey, PersistentDataType.STRING);
+        if (id != null) return id;
+        return pdc.has(key, PersistentDataType.BYTE) ? DropManager.DEFAULT_TRADER : null;
     }
 
-    public WanderingTrader spawnTrader(Location loc) {
+    public WanderingTrader spawnTrader(String id, Location loc) {
         // Remove existing
-        getTrader().ifPresent(Entity::remove);
+        getTrader(id).ifPresent(Entity::remove);
 
         World world = loc.getWorld();
         WanderingTrader trader = (WanderingTrader) world.spawnEntity(loc, EntityType.WANDERING_TRADER);
-        markTrader(trader);
+        markTrader(trader, id);
 
         trader.setCustomName(ChatColor.GOLD + "Shop Trader");
         trader.setCustomNameVisible(true);
@@ -75,20 +107,23 @@ public class TraderManager {
         // Ensure no invisibility effect remains
         trader.removePotionEffect(org.bukkit.potion.PotionEffectType.INVISIBILITY);
 
-        this.traderUuid = trader.getUniqueId();
-        this.traderLocation = trader.getLocation().clone();
-        saveToConfig();
+        TraderRecord rec = traders.computeIfAbsent(id, TraderRecord::new);
+        rec.uuid = trader.getUniqueId();
+        rec.location = trader.getLocation().clone();
+        saveToConfig(rec);
         plugin.saveConfig();
+        dropManager.add(id);
         return trader;
     }
 
-    private void markTrader(Entity e) {
+    private void markTrader(Entity e, String id) {
         e.getPersistentDataContainer().set(key, PersistentDataType.BYTE, (byte) 1);
+        e.getPersistentDataContainer().set(idKey, PersistentDataType.STRING, id);
         e.addScoreboardTag("ShopTrader");
     }
 
-    public boolean rotateTrader(float degrees) {
-        Optional<WanderingTrader> opt = getTrader();
+    public boolean rotateTrader(String id, float degrees) {
+        Optional<WanderingTrader> opt = getTrader(id);
         if (opt.isEmpty()) return false;
         WanderingTrader trader = opt.get();
 
@@ -96,66 +131,98 @@ public class TraderManager {
         float newYaw = loc.getYaw() + degrees;
         loc.setYaw(newYaw);
         trader.teleport(loc);
-        this.traderLocation = trader.getLocation().clone();
+        TraderRecord rec = traders.computeIfAbsent(id, TraderRecord::new);
+        rec.location = trader.getLocation().clone();
         return true;
     }
 
-    public void openShopTo(org.bukkit.entity.Player player) {
-        gui.open(player, TraderGUI.Tab.SHOP);
+    public void openShopTo(org.bukkit.entity.Player player, String id) {
+        gui.open(player, id, TraderGUI.Tab.SHOP);
     }
 
     public void loadFromConfig() {
-        String path = "trader";
-        String worldName = plugin.getConfig().getString(path + ".world");
-        String uuidStr = plugin.getConfig().getString(path + ".uuid");
-        double x = plugin.getConfig().getDouble(path + ".x", Double.NaN);
-        double y = plugin.getConfig().getDouble(path + ".y", Double.NaN);
-        double z = plugin.getConfig().getDouble(path + ".z", Double.NaN);
-        float yaw = (float) plugin.getConfig().getDouble(path + ".yaw", 0.0);
-        float pitch = (float) plugin.getConfig().getDouble(path + ".pitch", 0.0);
-
-        if (uuidStr != null) {
-            try {
-                this.traderUuid = UUID.fromString(uuidStr);
-            } catch (IllegalArgumentException ignored) {}
-        }
+        migrateLegacySection();
+        traders.clear();
+        ConfigurationSection all = plugin.getConfig().getConfigurationSection("traders");
+        if (all == null) return;
+        for (String id : all.getKeys(false)) {
+            ConfigurationSection sec = all.getConfigurationSection(id);
+            if (sec == null) continue;
+            TraderRecord rec = new TraderRecord(id);
+            traders.put(id, rec);
+
+            String uuidStr = sec.getString("uuid");
+            if (uuidStr != null) {
+                try {
+                    rec.uuid = UUID.fromString(uuidStr);
+                } catch (IllegalArgumentException ignored) {}
+            }
 
-        if (worldName != null && !Double.isNaN(x) && !Double.isNaN(y) && !Double.isNaN(z)) {
-            World world = Bukkit.getWorld(worldName);
-            if (world != null) {
-                this.traderLocation = new Location(world, x, y, z, yaw, pitch);
+            String worldName = sec.getString("world");
+            double x = sec.getDouble("x", Double.NaN);
+            double y = sec.getDouble("y", Double.NaN);
+            double z = sec.getDouble("z", Double.NaN);
+            if (worldName != null && !Double.isNaN(x) && !Double.isNaN(y) && !Double.isNaN(z)) {
+                World world = Bukkit.getWorld(worldName);
+                if (world != null) {
+                    rec.location = new Location(world, x, y, z, (float) sec.getDouble("yaw", 0.0), (float) sec.getDouble("pitch", 0.0));
+                }
+            }
+
+            // If no trader entity exists but we have a location, respawn it
+            if (getTrader(id).isEmpty() && rec.location != null) {
+                spawnTrader(id, rec.location);
             }
         }
+    }
 
-        // If no trader entity exists but we have a location, respawn it
-        if (getTrader().isEmpty() && traderLocation != null) {
-            spawnTrader(traderLocation);
+    // Older configs kept a single trader under 'trader'; it becomes traders.default
+    private void migrateLegacySection() {
+        ConfigurationSection legacy = plugin.getConfig().getConfigurationSection("trader");
+        if (legacy == null) return;
+        String path = "traders." + DropManager.DEFAULT_TRADER;
+        // isSet ignores the bundled defaults; only a real traders.default section blocks the move
+        if (plugin.getConfig().isSet(path)) {
+            plugin.getLogger().warning("Секцію 'trader' не перенесено: 'traders." + DropManager.DEFAULT_TRADER + "' вже існує.");
+            return;
+        }
+        for (Map.Entry<String, Object> e : legacy.getValues(false).entrySet()) {
+            plugin.getConfig().set(path + "." + e.getKey(), e.getValue());
         }
+        plugin.getConfig().set("trader", null);
+        plugin.saveConfig();
+        plugin.getLogger().info("Секцію 'trader' перенесено до 'traders." + DropManager.DEFAULT_TRADER + "'.");
     }
 
     public void saveToConfig() {
-        String path = "trader";
-        if (traderLocation != null) {
-            plugin.getConfig().set(path + ".world", traderLocation.getWorld().getName());
-            plugin.getConfig().set(path + ".x", traderLocation.getX());
-            plugin.getConfig().set(path + ".y", traderLocation.getY());
-            plugin.getConfig().set(path + ".z", traderLocation.getZ());
-            plugin.getConfig().set(path + ".yaw", traderLocation.getYaw());
-            plugin.getConfig().set(path + ".pitch", traderLocation.getPitch());
+        for (TraderRecord rec : traders.values()) saveToConfig(rec);
+    }
+
+    private void saveToConfig(TraderRecord rec) {
+        String path = "traders." + rec.id;
+        if (rec.location != null) {
+            plugin.getConfig().set(path + ".world", rec.location.getWorld().getName());
+            plugin.getConfig().set(path + ".x", rec.location.getX());
+            plugin.getConfig().set(path + ".y", rec.location.getY());
+            plugin.getConfig().set(path + ".z", rec.location.getZ());
+            plugin.getConfig().set(path + ".yaw", rec.location.getYaw());
+            plugin.getConfig().set(path + ".pitch", rec.location.getPitch());
         }
-        if (traderUuid != null) {
-            plugin.getConfig().set(path + ".uuid", traderUuid.toString());
+        if (rec.uuid != null) {
+            plugin.getConfig().set(path + ".uuid", rec.uuid.toString());
         }
     }
 
-    public boolean removeTrader() {
-        Optional<WanderingTrader> opt = getTrader();
+    public boolean removeTrader(String id) {
+        Optional<WanderingTrader> opt = getTrader(id);
         opt.ifPresent(Entity::remove);
-        boolean existed = opt.isPresent();
-        this.traderUuid = null;
-        this.traderLocation = null;
-        plugin.getConfig().set("trader", null);
+        boolean existed = opt.isPresent() || traders.containsKey(id);
+        traders.remove(id);
+        // Drop the whole section, rotation overrides included, so the id is not re-registered on the next load
+        plugin.getConfig().set("traders." + id, null);
         plugin.saveConfig();
+        if (!DropManager.DEFAULT_TRADER.equals(id)) dropManager.remove(id);
+        gui.forgetTrader(id);
         return existed;
     }
 }
@@ -5,8 +5,15 @@ import com.bodia.shoptrader.gui.TraderGUI;
 import com.bodia.shoptrader.ShopTraderPlugin;
 import com.bodia.shoptrader.quests.QuestDef;
 import com.bodia.shoptrader.quests.QuestManager;
+import com.bodia.shoptrader.model.Category;
+import com.bodia.shoptrader.model.Tier;
+import com.bodia.shoptrader.shop.Catalog;
+import com.bodia.shoptrader.shop.DropManager;
+import com.bodia.shoptrader.shop.MaterialFilter;
+import com.bodia.shoptrader.shop.RotationHistory;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -14,7 +21,15 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -37,7 +52,7 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                 gui.open(p, TraderGUI.Tab.SHOP);
                 return true;
             }
-            sender.sendMessage("Використання: /" + label + " <open|spawn|rotate|remove|reload|quests|deliver|claim|claimall|qregen|sellregen> [аргументи]");
+            sender.sendMessage("Використання: /" + label + " <open|price|find|history|spawn|rotate|remove|reload|quests|deliver|claim|claimall|qregen|sellregen> [аргументи]");
             return true;
         }
 
@@ -48,7 +63,13 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage("Лише гравці можуть відкривати магазин.");
                     return true;
                 }
-                gui.open(p, TraderGUI.Tab.SHOP);
+                String id = args.length >= 2 ? args[1] : DropManager.DEFAULT_TRADER;
+                // An unknown id would silently fall back to the default trader's drop; refuse it instead
+                if (args.length >= 2 && !manager.getTraderIds().contains(id)) {
+                    sender.sendMessage("Невідомий торговець: " + id);
+                    return true;
+                }
+                gui.open(p, id, TraderGUI.Tab.SHOP);
                 return true;
             }
             case "spawn": {
@@ -56,18 +77,29 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage("Вам бракує дозволу: shoptrader.admin");
                     return true;
                 }
+                // /trader spawn [id] [<world> <x> <y> <z>]; the bare coordinate form keeps targeting the default trader.
+                // Any other argument count is rejected so a partial form never replaces an existing trader.
+                if (args.length != 1 && args.length != 2 && args.length != 5 && args.length != 6) {
+                    sender.sendMessage("Використання: /" + label + " spawn [id] [світ x y z] (або виконайте як гравець, щоб використати свою локацію)");
+                    return true;
+                }
+                String id = args.length == 2 || args.length == 6 ? args[1] : DropManager.DEFAULT_TRADER;
+                if (!TraderManager.isValidId(id)) {
+                    sender.sendMessage("Некоректний ідентифікатор торговця: дозволено 1-32 символи (латинські літери, цифри, '_' або '-').");
+                    return true;
+                }
+                int at = args.length == 6 ? 2 : 1;
                 Location loc = null;
                 if (args.length >= 5) {
-                    // /trader spawn <world> <x> <y> <z>
-                    World w = Bukkit.getWorld(args[1]);
+                    World w = Bukkit.getWorld(args[at]);
                     if (w == null) {
-                        sender.sendMessage("Невідомий світ: " + args[1]);
+                        sender.sendMessage("Невідомий світ: " + args[at]);
                         return true;
                     }
                     try {
-                        double x = Double.parseDouble(args[2]);
-                        double y = Double.parseDouble(args[3]);
-                        double z = Double.parseDouble(args[4]);
+                        double x = Double.parseDouble(args[at + 1]);
+                        double y = Double.parseDouble(args[at + 2]);
+                        double z = Double.parseDouble(args[at + 3]);
                         loc = new Location(w, x, y, z);
                     } catch (NumberFormatException e) {
                         sender.sendMessage("Координати мають бути числами.");
@@ -77,11 +109,11 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                     loc = p.getLocation();
                 }
                 if (loc == null) {
-                    sender.sendMessage("Використання: /" + label + " spawn [світ x y z] (або виконайте як гравець, щоб використати свою локацію)");
+                    sender.sendMessage("Використання: /" + label + " spawn [id] [світ x y z] (або виконайте як гравець, щоб використати свою локацію)");
                     return true;
                 }
-                manager.spawnTrader(loc);
-                sender.sendMessage("Торговця створено на координатах " + String.format("%.1f %.1f %.1f", loc.getX(), loc.getY(), loc.getZ()));
+                manager.spawnTrader(id, loc);
+                sender.sendMessage("Торговця «" + id + "» створено на координатах " + String.format("%.1f %.1f %.1f", loc.getX(), loc.getY(), loc.getZ()));
                 return true;
             }
             case "rotate": {
@@ -90,14 +122,15 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                     return true;
                 }
                 if (args.length < 2) {
-                    sender.sendMessage("Використання: /" + label + " rotate <градуси>");
+                    sender.sendMessage("Використання: /" + label + " rotate <градуси> [id]");
                     return true;
                 }
                 try {
                     float deg = Float.parseFloat(args[1]);
-                    boolean ok = manager.rotateTrader(deg);
+                    String id = args.length >= 3 ? args[2] : DropManager.DEFAULT_TRADER;
+                    boolean ok = manager.rotateTrader(id, deg);
                     if (ok) sender.sendMessage("Повернуто торговця на " + deg + " градусів.");
-                    else sender.sendMessage("Немає торговця для повороту. Спочатку використайте /" + label + " spawn.");
+                    else sender.sendMessage("Немає торговця «" + id + "» для повороту. Спочатку використайте /" + label + " spawn " + id + ".");
                 } catch (NumberFormatException e) {
                     sender.sendMessage("Градуси мають бути числом");
                 }
@@ -108,7 +141,7 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage("Вам бракує дозволу: shoptrader.admin");
                     return true;
                 }
-                boolean existed = manager.removeTrader();
+                boolean existed = manager.removeTrader(args.length >= 2 ? args[1] : DropManager.DEFAULT_TRADER);
                 sender.sendMessage(existed ? "Торговця видалено." : "Немає торговця для видалення.");
                 return true;
             }
@@ -118,7 +151,55 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                     return true;
                 }
                 plugin.reloadAll();
-                sender.sendMessage("Конфігурацію ShopTrader перезавантажено.");
+                sender.sendMessage("Перезавантаження конфігурації ShopTrader...");
+                return true;
+            }
+            case "price": {
+                if (args.length < 2) {
+                    sender.sendMessage("Використання: /" + label + " price <назва предмета>");
+                    return true;
+                }
+                String query = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+                Catalog catalog = plugin.getCatalog();
+                List<Material> found = catalog.search(query, 8);
+                if (found.isEmpty()) {
+                    sender.sendMessage("Нічого не знайдено за запитом: " + query);
+                    return true;
+                }
+                sender.sendMessage("Ціни для «" + query + "»:");
+                for (Material m : found) {
+                    double sell = catalog.sellUnitPrice(m);
+                    sender.sendMessage(" - " + m.name() + ": купівля " + String.format(Locale.ROOT, "%.2f", catalog.dynamicShopPrice(m))
+                            + ", продаж " + (sell < 0 ? "недоступний" : String.format(Locale.ROOT, "%.2f", sell)));
+                }
+                return true;
+            }
+            case "find": {
+                if (!sender.hasPermission("shoptrader.admin")) {
+                    sender.sendMessage("Вам бракує дозволу: shoptrader.admin");
+                    return true;
+                }
+                if (args.length < 2) {
+                    sender.sendMessage("Використання: /" + label + " find [tier=uncommon,epic] [cat=armors] [min=0] [max=2000] [minmult=1.5] [maxmult=3]");
+                    return true;
+                }
+                MaterialFilter filter;
+                try {
+                    filter = parseFilter(Arrays.copyOfRange(args, 1, args.length));
+                } catch (IllegalArgumentException ex) {
+                    sender.sendMessage("Невірний критерій: " + ex.getMessage());
+                    return true;
+                }
+                List<Material> found = plugin.getCatalog().find(filter);
+                if (sender instanceof Player p) {
+                    gui.openMaterialList(p, "Фільтр (" + found.size() + ")", found);
+                    return true;
+                }
+                sender.sendMessage("Знайдено " + found.size() + ":");
+                int shown = Math.min(found.size(), 30);
+                List<String> names = new ArrayList<>(shown);
+                for (int i = 0; i < shown; i++) names.add(found.get(i).name());
+                sender.sendMessage(String.join(", ", names) + (found.size() > shown ? ", ..." : ""));
                 return true;
             }
             case "quests": {
@@ -177,6 +258,42 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                 plugin.getQuestManager().claimAll(p);
                 return true;
             }
+            case "history": {
+                if (!sender.hasPermission("shoptrader.admin")) {
+                    sender.sendMessage("Вам бракує дозволу: shoptrader.admin");
+                    return true;
+                }
+                if (args.length >= 2 && args[1].equalsIgnoreCase("export")) {
+                    exportHistory(sender, args.length >= 3 ? args[2] : null);
+                    return true;
+                }
+                // /trader history [id] [кількість]
+                String id = null;
+                int limit = 5;
+                for (int i = 1; i < args.length; i++) {
+                    try {
+                        limit = Math.max(1, Integer.parseInt(args[i]));
+                    } catch (NumberFormatException e) {
+                        id = args[i];
+                    }
+                }
+                List<RotationHistory.Rotation> recent = plugin.getDropManager().history().recent(id, limit);
+                if (recent.isEmpty()) {
+                    sender.sendMessage("Історія ротацій порожня.");
+                    return true;
+                }
+                long now = System.currentTimeMillis();
+                for (RotationHistory.Rotation r : recent) {
+                    sender.sendMessage("[" + r.traderId + "] " + ((now - r.rolledAt) / 60_000L) + " хв тому" + (r.personal ? " (персональна)" : "")
+                            + ": " + r.size() + " предметів, покупок " + r.totalPurchases());
+                    for (int i = 0; i < r.size(); i++) {
+                        long first = r.timeToFirstPurchase(i);
+                        sender.sendMessage("  " + r.tier(i).name() + " " + r.material(i).name() + " @ " + String.format(Locale.ROOT, "%.2f", r.price(i))
+                                + " — куплено " + r.purchases(i) + (first < 0 ? "" : ", перша покупка через " + (first / 1000L) + " с"));
+                    }
+                }
+                return true;
+            }
             case "sellregen": {
                 if (!sender.hasPermission("shoptrader.admin")) {
                     sender.sendMessage("Вам бракує дозволу: shoptrader.admin");
@@ -199,22 +316,77 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                 return true;
             }
             default: {
-                sender.sendMessage("Невідома підкоманда. Використання: /" + label + " <open|spawn|rotate|remove|reload|quests|deliver|claim|claimall|qregen|sellregen> [аргументи]");
+                sender.sendMessage("Невідома підкоманда. Використання: /" + label + " <open|price|find|history|spawn|rotate|remove|reload|quests|deliver|claim|claimall|qregen|sellregen> [аргументи]");
                 return true;
             }
         }
     }
 
+    // Copies the ring on the main thread, then streams the CSV to disk asynchronously
+    private void exportHistory(CommandSender sender, String traderId) {
+        List<RotationHistory.Rotation> rows = plugin.getDropManager().history().snapshot(traderId);
+        File dir = new File(plugin.getDataFolder(), "history");
+        File out = new File(dir, "rotations-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            String msg;
+            try {
+                Files.createDirectories(dir.toPath());
+                try (Writer w = Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8)) {
+                    RotationHistory.writeCsv(w, rows);
+                }
+                msg = "Історію ротацій (" + rows.size() + ") експортовано: " + out.getPath();
+            } catch (IOException e) {
+                msg = "Не вдалося експортувати історію: " + e.getMessage();
+            }
+            final String result = msg;
+            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(result));
+        });
+    }
+
+    // key=value criteria; comma-separated values within a key are OR-ed, keys are AND-ed
+    private MaterialFilter parseFilter(String[] criteria) {
+        MaterialFilter f = new MaterialFilter();
+        double min = 0.0, max = Double.POSITIVE_INFINITY, minMult = 0.0, maxMult = Double.POSITIVE_INFINITY;
+        for (String c : criteria) {
+            int eq = c.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException(c);
+            String key = c.substring(0, eq).toLowerCase(Locale.ROOT);
+            String value = c.substring(eq + 1);
+            try {
+                switch (key) {
+                    case "tier" -> {
+                        for (String v : value.split(",")) f.tiers(Tier.valueOf(v.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    case "cat", "category" -> {
+                        for (String v : value.split(",")) f.categories(Category.valueOf(v.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    case "min" -> min = Double.parseDouble(value);
+                    case "max" -> max = Double.parseDouble(value);
+                    case "minmult" -> minMult = Double.parseDouble(value);
+                    case "maxmult" -> maxMult = Double.parseDouble(value);
+                    default -> throw new IllegalArgumentException(c);
+                }
+            } catch (IllegalArgumentException ex) {
+                // also covers NumberFormatException and unknown enum names
+                throw new IllegalArgumentException(c);
+            }
+        }
+        return f.priceBetween(min, max).multiplierBetween(minMult, maxMult);
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         List<String> list = new ArrayList<>();
         if (args.length == 1) {
             list.add("open");
+            list.add("price");
             list.add("quests");
             list.add("deliver");
             list.add("claim");
             list.add("claimall");
             if (sender.hasPermission("shoptrader.admin")) {
+                list.add("find");
+                list.add("history");
                 list.add("spawn");
                 list.add("rotate");
                 list.add("remove");
@@ -222,12 +394,33 @@ public class TraderCommand implements CommandExecutor, TabCompleter {
                 list.add("qregen");
                 list.add("sellregen");
             }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("price")) {
+            list.addAll(plugin.getCatalog().completeMaterial(args[1], 50));
+        } else if (args.length >= 2 && args[0].equalsIgnoreCase("find") && sender.hasPermission("shoptrader.admin")) {
+            String cur = args[args.length - 1].toLowerCase(Locale.ROOT);
+            for (String key : List.of("tier=", "cat=", "min=", "max=", "minmult=", "maxmult=")) {
+                if (key.startsWith(cur)) list.add(key);
+            }
+            if (cur.startsWith("tier=")) for (Tier t : Tier.values()) list.add("tier=" + t.name().toLowerCase(Locale.ROOT));
+            if (cur.startsWith("cat=")) for (Category c : Category.values()) list.add("cat=" + c.name().toLowerCase(Locale.ROOT));
         } else if (args.length == 2 && args[0].equalsIgnoreCase("rotate") && sender.hasPermission("shoptrader.admin")) {
             list.add("90");
             list.add("180");
             list.add("270");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("history") && sender.hasPermission("shoptrader.admin")) {
+            list.add("export");
+            list.addAll(manager.getTraderIds());
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("history") && args[1].equalsIgnoreCase("export") && sender.hasPermission("shoptrader.admin")) {
+            list.addAll(manager.getTraderIds());
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("rotate") && sender.hasPermission("shoptrader.admin")) {
+            list.addAll(manager.getTraderIds());
         } else if (args.length == 2 && args[0].equalsIgnoreCase("spawn") && sender.hasPermission("shoptrader.admin")) {
+            list.addAll(manager.getTraderIds());
+            for (World w : Bukkit.getWorlds()) list.add(w.getName());
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("spawn") && sender.hasPermission("shoptrader.admin")) {
             for (World w : Bukkit.getWorlds()) list.add(w.getName());
+        } else if (args.length == 2 && (args[0].equalsIgnoreCase("open") || args[0].equalsIgnoreCase("remove") && sender.hasPermission("shoptrader.admin"))) {
+            list.addAll(manager.getTraderIds());
         } else if (args.length == 2 && (args[0].equalsIgnoreCase("deliver") || args[0].equalsIgnoreCase("claim"))) {
             for (QuestDef def : ShopTraderPlugin.getInstance().getQuestManager().getAll()) {
                 list.add(def.getId());
@@ -0,0 +1,200 @@
+package com.bodia.shoptrader.gui;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.SkullMeta;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Textured Lucky Block heads. The textures are constants, so the heads are built once (at enable and on
+ * reload) into templates that renders clone. The reflection route that produced a textured head is
+ * remembered, so later rebuilds go straight to it instead of probing every variant again.
+ */
+final class LuckyHeads {
+
+    // --- Lucky Block custom heads ---
+    // COMMON
+    private static final String LUCKY_TEX_COMMON = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvZGIxODdlNDE1NjQwZGEwNTcyNjBkMTMwMDk5ODBjMDcyOTRmYzJkNzI0MGNlYzZmOWUzOTA3OTZjYmIxOTQ4NCJ9fX0=";
+    // GOLD (alias: RARE)
+    private static final String LUCKY_TEX_RARE = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvZmRiODhmMjZjN2ZjYTQ1MGE1NGI2OTM5YjZmNzRkMzI0Yzg0ZWYyMTM4OTY3MDQ2ZTA5Y2U5OTZiNGE0ODkyMyJ9fX0=";
+    // EPIC
+    private static final String LUCKY_TEX_EPIC = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvMzcyNWRhODJhYTBhZGU1ZDUyYmQyMDI0ZjRiYzFkMDE5ZmMwMzBlOWVjNWUwZWMxNThjN2Y5YTZhYTBjNDNiYSJ9fX0=";
+
+    private enum Strategy { GAME_PROFILE, PLAYER_PROFILE, NONE }
+
+    // Route that worked on this server; null until the first probe
+    private static Strategy strategy;
+
+    private final Logger log;
+    private final Map<String, ItemStack> templates = new HashMap<>();
+
+    LuckyHeads(Logger log) {
+        this.log = log;
+    }
+
+    /** Rebuilds the templates. Cheap after the first call: only the recorded strategy is used. */
+    void load() {
+        templates.clear();
+        templates.put("common", resolve(LUCKY_TEX_COMMON));
+        templates.put("rare", resolve(LUCKY_TEX_RARE));
+        templates.put("epic", resolve(LUCKY_TEX_EPIC));
+    }
+
+    /** Fresh copy of the head for {@code tier} ("gold" is an alias of "rare"); a plain head if none could be built. */
+    ItemStack get(String tier) {
+        String key = switch (tier == null ? "" : tier.toLowerCase(Locale.ROOT)) {
+            case "rare", "gold" -> "rare";
+            case "epic" -> "epic";
+            default -> "common";
+        };
+        ItemStack template = templates.get(key);
+        return template != null ? template.clone() : new ItemStack(Material.PLAYER_HEAD);
+    }
+
+    private ItemStack resolve(String b64) {
+        if (strategy != null) {
+            ItemStack head = build(strategy, b64);
+            return head != null ? head : new ItemStack(Material.PLAYER_HEAD);
+        }
+        for (Strategy s : new Strategy[]{Strategy.GAME_PROFILE, Strategy.PLAYER_PROFILE}) {
+            ItemStack head = build(s, b64);
+            if (head != null) {
+                strategy = s;
+                log.info("Lucky Block heads: " + s.name().toLowerCase(Locale.ROOT) + " profile route.");
+                return head;
+            }
+        }
+        strategy = Strategy.NONE;
+        log.warning("Lucky Block heads: no profile route available; plain heads are used.");
+        return new ItemStack(Material.PLAYER_HEAD);
+    }
+
+    private static ItemStack build(Strategy s, String b64) {
+        return switch (s) {
+            case GAME_PROFILE -> viaGameProfile(b64);
+            case PLAYER_PROFILE -> viaPlayerProfile(b64);
+            case NONE -> null;
+        };
+    }
+
+    // 1) Direct GameProfile injection (no network, most reliable across Spigot/Paper)
+    private static ItemStack viaGameProfile(String b64) {
+        try {
+            Class<?> gameProfileClass = Class.forName("com.mojang.authlib.GameProfile");
+            Class<?> propertyClass = Class.forName("com.mojang.authlib.properties.Property");
+            Object gp = gameProfileClass.getConstructor(UUID.class, String.class).newInstance(UUID.randomUUID(), null);
+            Object props = gameProfileClass.getMethod("getProperties").invoke(gp);
+            Object prop = propertyClass.getConstructor(String.class, String.class).newInstance("textures", b64);
+            Method put = props.getClass().getMethod("put", String.class, propertyClass);
+            put.invoke(props, "textures", prop);
+
+            ItemStack head = new ItemStack(Material.PLAYER_HEAD);
+            SkullMeta sm = (SkullMeta) head.getItemMeta();
+            // Assign to any field named 'profile' or of GameProfile type
+            Field target = null;
+            for (Field f : sm.getClass().getDeclaredFields()) {
+                if (f.getName().equalsIgnoreCase("profile") || f.getType().getName().endsWith("GameProfile")) {
+                    target = f; break;
+                }
+            }
+            if (target != null) {
+                target.setAccessible(true);
+                target.set(sm, gp);
+                head.setItemMeta(sm);
+                return head;
+            }
+        } catch (Throwable ignored) {
+            // Not available on this server
+        }
+        return null;
+    }
+
+    // 2) Paper PlayerProfile; try direct textures property first, then URL
+    private static ItemStack viaPlayerProfile(String b64) {
+        try {
+            Object profile = null;
+            try {
+                Method m = Bukkit.class.getMethod("createProfile", UUID.class, String.class);
+                profile = m.invoke(null, UUID.randomUUID(), null);
+            } catch (NoSuchMethodException ignored) {
+                try {
+                    Method m = Bukkit.class.getMethod("createProfile", UUID.class);
+                    profile = m.invoke(null, UUID.randomUUID());
+                } catch (NoSuchMethodException ignored2) {}
+            }
+            if (profile == null) return null;
+            // Try adding a ProfileProperty("textures", b64) if available
+            try {
+                Object props = profile.getClass().getMethod("getProperties").invoke(profile);
+                // Try org.bukkit.profile.ProfileProperty first
+                Class<?> propCls = null;
+                try { propCls = Class.forName("org.bukkit.profile.ProfileProperty"); } catch (Throwable t) {}
+                if (propCls == null) {
+                    try { propCls = Class.forName("com.destroystokyo.paper.profile.ProfileProperty"); } catch (Throwable t) {}
+                }
+                if (propCls != null) {
+                    Object propObj;
+                    try {
+                        propObj = propCls.getConstructor(String.class, String.class).newInstance("textures", b64);
+                    } catch (NoSuchMethodException e) {
+                        // Some variants need (name, value, signature)
+                        propObj = propCls.getConstructor(String.class, String.class, String.class).newInstance("textures", b64, null);
+                    }
+                    // props is a collection-like type with add
+                    Method add = props.getClass().getMethod("add", Object.class);
+                    add.invoke(props, propObj);
+                }
+            } catch (Throwable ignoredProps) {
+                // Fall back to URL setSkin
+                try {
+                    String url = extractSkinUrl(b64);
+                    if (url != null) {
+                        Object textures = profile.getClass().getMethod("getTextures").invoke(profile);
+                        textures.getClass().getMethod("setSkin", URL.class).invoke(textures, new URL(url));
+                        try { profile.getClass().getMethod("setTextures", textures.getClass()).invoke(profile, textures); } catch (NoSuchMethodException ignored) {}
+                    }
+                } catch (Throwable ignored2) {}
+            }
+
+            ItemStack head = new ItemStack(Material.PLAYER_HEAD);
+            SkullMeta sm = (SkullMeta) head.getItemMeta();
+            for (Method m : sm.getClass().getMethods()) {
+                if ((m.getName().equals("setPlayerProfile") || m.getName().equals("setOwnerProfile"))
+                        && m.getParameterCount() == 1
+                        && m.getParameterTypes()[0].getSimpleName().contains("PlayerProfile")) {
+                    m.invoke(sm, profile);
+                    head.setItemMeta(sm);
+                    return head;
+                }
+            }
+        } catch (Throwable ignored) {
+            // Not available on this server
+        }
+        return null;
+    }
+
+    private static String extractSkinUrl(String base64) {
+        try {
+            String json = new String(Base64.getDecoder().decode(base64));
+            String marker = "\"url\":\"";
+            int idx = json.indexOf(marker);
+            if (idx == -1) return null;
+            int start = idx + marker.length();
+            int end = json.indexOf('"', start);
+            if (end == -1) return null;
+            return json.substring(start, end);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
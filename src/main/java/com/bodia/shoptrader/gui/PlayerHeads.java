@@ -0,0 +1,115 @@
+package com.bodia.shoptrader.gui;
+
+import com.bodia.shoptrader.economy.EconomyService;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.SkullMeta;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Player-info heads, one per online player. The skull and its profile are built once; afterwards only the
+ * balance line is rewritten, and only when the balance changed. A changed head is a new stack, so the
+ * GUI's diff update sees it; an unchanged one is the same instance and costs nothing to re-apply.
+ */
+final class PlayerHeads {
+
+    // Profile accessors resolved once. Prefer the PlayerProfile route to avoid remote lookups;
+    // the profile type differs between Bukkit and Paper versions, so it is looked up by name.
+    private static final MethodHandle GET_PROFILE; // (Player) -> Object
+    private static final MethodHandle SET_PROFILE; // (SkullMeta, Object) -> void
+    static {
+        MethodHandle get = null, set = null;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (String name : new String[]{"org.bukkit.profile.PlayerProfile", "com.destroystokyo.paper.profile.PlayerProfile"}) {
+            try {
+                Class<?> profileClass = Class.forName(name);
+                MethodHandle g = lookup.findVirtual(Player.class, "getPlayerProfile", MethodType.methodType(profileClass));
+                MethodHandle s = lookup.findVirtual(SkullMeta.class, "setPlayerProfile", MethodType.methodType(void.class, profileClass));
+                get = g.asType(MethodType.methodType(Object.class, Player.class));
+                set = s.asType(MethodType.methodType(void.class, SkullMeta.class, Object.class));
+                break;
+            } catch (Throwable ignore) {
+                // Not available in this API flavour; try the next one, else fall back to setOwningPlayer
+            }
+        }
+        GET_PROFILE = get;
+        SET_PROFILE = set;
+    }
+
+    private static final class Head {
+        ItemStack item;
+        double balance;
+    }
+
+    private final EconomyService economy;
+    private final Map<UUID, Head> heads = new HashMap<>();
+
+    PlayerHeads(EconomyService economy) {
+        this.economy = economy;
+    }
+
+    ItemStack get(Player p) {
+        double bal = economy.getBalance(p);
+        Head h = heads.get(p.getUniqueId());
+        if (h == null) {
+            h = new Head();
+            h.item = build(p, bal);
+            h.balance = bal;
+            heads.put(p.getUniqueId(), h);
+        } else if (bal != h.balance) {
+            ItemStack updated = h.item.clone();
+            ItemMeta meta = updated.getItemMeta();
+            meta.setLore(balanceLore(bal));
+            updated.setItemMeta(meta);
+            h.item = updated;
+            h.balance = bal;
+        }
+        return h.item;
+    }
+
+    void evict(UUID player) {
+        heads.remove(player);
+    }
+
+    private static ItemStack build(Player p, double bal) {
+        ItemStack head = new ItemStack(Material.PLAYER_HEAD);
+        ItemMeta im = head.getItemMeta();
+        if (im instanceof SkullMeta sm) {
+            boolean appliedProfile = false;
+            if (GET_PROFILE != null) {
+                try {
+                    Object profile = GET_PROFILE.invokeExact(p);
+                    if (profile != null) {
+                        SET_PROFILE.invokeExact(sm, profile);
+                        appliedProfile = true;
+                    }
+                } catch (Throwable ignore) {
+                    // will fall back below
+                }
+            }
+            if (!appliedProfile) {
+                sm.setOwningPlayer(p);
+            }
+        }
+        // Fallback generic item keeps the same name and lore
+        im.setDisplayName(ChatColor.AQUA + p.getName());
+        im.setLore(balanceLore(bal));
+        head.setItemMeta(im);
+        return head;
+    }
+
+    private static List<String> balanceLore(double bal) {
+        return List.of(ChatColor.GRAY + "Баланс: " + ChatColor.GOLD + String.format(Locale.ROOT, "%.2f", bal));
+    }
+}
@@ -8,21 +8,19 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.PrepareAnvilEvent;
+import org.bukkit.inventory.AnvilInventory;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.inventory.meta.SkullMeta;
 import org.bukkit.enchantments.Enchantment;
-import java.lang.reflect.Method;
-import java.lang.reflect.Field;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.Base64;
 import java.util.UUID;
-import java.net.URL;
 
 import com.bodia.shoptrader.economy.EconomyService;
 import com.bodia.shoptrader.model.ShopItem;
@@ -30,13 +28,33 @@ import com.bodia.shoptrader.model.Category;
 import com.bodia.shoptrader.model.Tier;
 import com.bodia.shoptrader.shop.Catalog;
 import com.bodia.shoptrader.shop.DropManager;
+import com.bodia.shoptrader.shop.InventoryCounts;
+import com.bodia.shoptrader.shop.InventoryQuote;
+import com.bodia.shoptrader.shop.MaterialFilter;
+import com.bodia.shoptrader.shop.PreparedDrop;
+import com.bodia.shoptrader.shop.TraderRotation;
 import com.bodia.shoptrader.quests.QuestDef;
 import com.bodia.shoptrader.quests.QuestManager;
 import com.bodia.shoptrader.sell.SellRotationManager;
 
 public class TraderGUI {
 
-    public enum Tab { SHOP, QUESTS, SELL }
+    public enum Tab { SHOP, QUESTS, SELL, CATALOG }
+
+    // Category browser (opened from the shop tab's bottom row)
+    private static final Category[] BROWSABLE = {Category.ARMORS, Category.TOOLS_WEAPONS, Category.BLOCKS, Category.SPAWN_EGGS};
+    private static final int[] BROWSE_BUTTON_SLOTS = {47, 48, 50, 51};
+    private static final int[] CATALOG_SLOTS = {
+            10,11,12,13,14,15,16,
+            19,20,21,22,23,24,25,
+            28,29,30,31,32,33,34,
+            37,38,39,40,41,42,43
+    };
+    private static final int CATALOG_PREV = 48, CATALOG_BACK = 49, CATALOG_NEXT = 50;
+    private static final int SEARCH_BUTTON_SLOT = 53;
+    private static final int SEARCH_RESULT_LIMIT = 56; // two catalog pages
+    // Prices also mean-revert over time, so rendered pages age out even without trades
+    private static final long PAGE_MAX_AGE_MS = 60_000L;
 
     private final String TITLE_PREFIX = ChatColor.DARK_GREEN + "Торговець: ";
 
@@ -47,9 +65,40 @@ public class TraderGUI {
     private final QuestManager questManager;
     private final SellRotationManager sellManager;
 
-    private int lastCycleIndex = -1;
+    private final Map<String, Integer> lastCycleIndex = new HashMap<>(); // per trader id
     private int headRefreshCounter = 0;
+
+    // Prebuilt per-tab frames, see buildFrame()
+    private final Map<Tab, ItemStack[]> frames = new EnumMap<>(Tab.class);
+
+    private final PlayerHeads heads;
+    // Textured Lucky Block heads, built once and cloned per render; only used with lucky_block.use_heads
+    private final LuckyHeads luckyHeads;
+    private boolean luckyUseHeads;
+
+    private final CachedTimer questTimer = new CachedTimer();
+    private final CachedTimer sellTimer = new CachedTimer();
+    private final Map<String, CachedTimer> shopTimers = new HashMap<>(); // per trader id
+
+    // Open GUI views, registered on open and dropped on close/quit, so periodic refreshes only visit actual viewers
+    private final Map<UUID, Session> sessions = new HashMap<>();
+    private final Map<Tab, Map<UUID, Session>> sessionsByTab = new EnumMap<>(Tab.class);
+    {
+        for (Tab t : Tab.values()) sessionsByTab.put(t, new HashMap<>());
+    }
     private long lastQuestSecs = -1;
+    // Coalesced content refreshes: sessions marked dirty are re-rendered once on the next tick, within a time budget
+    private final ArrayDeque<Session> dirtySessions = new ArrayDeque<>();
+    private boolean flushScheduled;
+    private long refreshBudgetNanos;
+
+    // Pre-rendered category pages; rebuilt per category when Catalog.priceVersion() moves or they age out
+    private final Map<Category, ItemStack[][]> catalogPages = new EnumMap<>(Category.class);
+    private final Map<Category, long[]> catalogPagesStamp = new EnumMap<>(Category.class); // {priceVersion, builtAt}
+    // Shop tab content per trader, shared by all of its viewers; rebuilt when its drop rotates or Catalog.priceVersion() moves
+    private final Map<String, ShopPage> shopPages = new HashMap<>();
+    // Players with an open search anvil (plain vanilla anvil view, so no GUIHolder) -> trader they came from
+    private final Map<UUID, String> searching = new HashMap<>();
 
     public TraderGUI(org.bukkit.plugin.Plugin plugin, EconomyService economy, Catalog catalog, DropManager dropManager, QuestManager questManager, SellRotationManager sellManager) {
         this.plugin = plugin;
@@ -58,14 +107,24 @@ public class TraderGUI {
         this.dropManager = dropManager;
         this.questManager = questManager;
         this.sellManager = sellManager;
+        this.heads = new PlayerHeads(economy);
+        this.luckyHeads = new LuckyHeads(plugin.getLogger());
+        reloadSettings();
+    }
+
+    /** Re-reads the GUI settings: lucky_block.use_heads (rebuilding the head templates if used) and gui.refresh_budget_ms. */
+    public void reloadSettings() {
+        luckyUseHeads = plugin.getConfig().getBoolean("lucky_block.use_heads", false);
+        if (luckyUseHeads) luckyHeads.load();
+        refreshBudgetNanos = Math.max(0L, plugin.getConfig().getLong("gui.refresh_budget_ms", 2L)) * 1_000_000L;
     }
 
     private ItemStack questTimerItem() {
-        long secs = questManager.secondsUntilNextReset();
-        long h = secs / 3600;
-        long m = (secs % 3600) / 60;
-        long s = secs % 60;
-        String t = String.format("%02d:%02d:%02d", h, m, s);
+        return questTimer.get(questManager.secondsUntilNextReset(), this::buildQuestTimerItem);
+    }
+
+    private ItemStack buildQuestTimerItem(long secs) {
+        String t = clockHms(secs);
         ItemStack it = new ItemStack(Material.CLOCK);
         ItemMeta meta = it.getItemMeta();
         meta.setDisplayName(ChatColor.AQUA + "Щоденне оновлення через: " + ChatColor.YELLOW + t);
@@ -75,31 +134,21 @@ public class TraderGUI {
     }
 
     private void refreshQuestTimers() {
-        for (org.bukkit.entity.Player p : Bukkit.getOnlinePlayers()) {
-            Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-            if (top == null) continue;
-            if (!(top.getHolder() instanceof GUIHolder holder)) continue;
-            if (holder.tab != Tab.QUESTS) continue;
-            top.setItem(0, questTimerItem());
-        }
+        if (sessionsByTab.get(Tab.QUESTS).isEmpty()) return;
+        ItemStack timer = questTimerItem();
+        for (Session s : viewers(Tab.QUESTS)) put(s.top, 0, timer);
     }
 
     private void refreshQuestContent() {
-        for (org.bukkit.entity.Player p : Bukkit.getOnlinePlayers()) {
-            Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-            if (top == null) continue;
-            if (!(top.getHolder() instanceof GUIHolder holder)) continue;
-            if (holder.tab != Tab.QUESTS) continue;
-            fillQuests(top, p);
-        }
+        invalidate(Tab.QUESTS);
     }
 
     private ItemStack sellTimerItem() {
-        long secs = sellManager.secondsUntilRegen();
-        long h = secs / 3600;
-        long m = (secs % 3600) / 60;
-        long s = secs % 60;
-        String t = String.format("%02d:%02d:%02d", h, m, s);
+        return sellTimer.get(sellManager.secondsUntilRegen(), this::buildSellTimerItem);
+    }
+
+    private ItemStack buildSellTimerItem(long secs) {
+        String t = clockHms(secs);
         ItemStack it = new ItemStack(Material.CLOCK);
         ItemMeta meta = it.getItemMeta();
         meta.setDisplayName(ChatColor.AQUA + "До оновлення продажу: " + ChatColor.YELLOW + t);
@@ -108,23 +157,13 @@ public class TraderGUI {
     }
 
     private void refreshSellTimers() {
-        for (org.bukkit.entity.Player p : Bukkit.getOnlinePlayers()) {
-            Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-            if (top == null) continue;
-            if (!(top.getHolder() instanceof GUIHolder holder)) continue;
-            if (holder.tab != Tab.SELL) continue;
-            top.setItem(0, sellTimerItem());
-        }
+        if (sessionsByTab.get(Tab.SELL).isEmpty()) return;
+        ItemStack timer = sellTimerItem();
+        for (Session s : viewers(Tab.SELL)) put(s.top, 0, timer);
     }
 
     private void refreshSellContent() {
-        for (org.bukkit.entity.Player p : Bukkit.getOnlinePlayers()) {
-            Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-            if (top == null) continue;
-            if (!(top.getHolder() instanceof GUIHolder holder)) continue;
-            if (holder.tab != Tab.SELL) continue;
-            fillSellOffers(top);
-        }
+        invalidate(Tab.SELL);
     }
 
     public void refreshSellAll() {
@@ -137,63 +176,16 @@ public class TraderGUI {
 
     public void refreshQuestsFor(Player p) {
         if (p == null) return;
-        Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-        if (top == null) return;
-        if (!(top.getHolder() instanceof GUIHolder holder)) return;
-        if (holder.tab != Tab.QUESTS) return;
-        fillQuests(top, p);
+        Session s = sessionsByTab.get(Tab.QUESTS).get(p.getUniqueId());
+        if (s != null) invalidate(s);
     }
 
     public boolean isViewingQuests(Player p) {
-        if (p == null) return false;
-        Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-        if (top == null) return false;
-        if (!(top.getHolder() instanceof GUIHolder holder)) return false;
-        return holder.tab == Tab.QUESTS;
+        return p != null && sessionsByTab.get(Tab.QUESTS).containsKey(p.getUniqueId());
     }
 
     private ItemStack playerInfoItem(Player p) {
-        ItemStack head = new ItemStack(Material.PLAYER_HEAD);
-        ItemMeta im = head.getItemMeta();
-        if (im instanceof SkullMeta sm) {
-            // Prefer using PlayerProfile to avoid triggering remote lookups.
-            // Resolve the correct interface type via reflection to be compatible across Bukkit/Paper versions.
-            boolean appliedProfile = false;
-            try {
-                Class<?> profileClass = null;
-                try { profileClass = Class.forName("org.bukkit.profile.PlayerProfile"); } catch (Throwable ignore) {}
-                if (profileClass == null) {
-                    try { profileClass = Class.forName("com.destroystokyo.paper.profile.PlayerProfile"); } catch (Throwable ignore) {}
-                }
-                if (profileClass != null) {
-                    Method getProfile = p.getClass().getMethod("getPlayerProfile");
-                    Object profile = getProfile.invoke(p);
-                    if (profile != null && profileClass.isInstance(profile)) {
-                        Method setProfile = sm.getClass().getMethod("setPlayerProfile", profileClass);
-                        setProfile.invoke(sm, profile);
-                        appliedProfile = true;
-                    }
-                }
-            } catch (Throwable ignore) {
-                // getPlayerProfile or setPlayerProfile not available; will fall back below
-            }
-            if (!appliedProfile) {
-                sm.setOwningPlayer(p);
-            }
-            sm.setDisplayName(ChatColor.AQUA + p.getName());
-            double bal = economy.getBalance(p);
-            sm.setLore(List.of(
-                    ChatColor.GRAY + "Баланс: " + ChatColor.GOLD + String.format(Locale.ROOT, "%.2f", bal)
-            ));
-            head.setItemMeta(sm);
-        } else {
-            // Fallback generic item
-            im.setDisplayName(ChatColor.AQUA + p.getName());
-            double bal = economy.getBalance(p);
-            im.setLore(List.of(ChatColor.GRAY + "Баланс: " + ChatColor.GOLD + String.format(Locale.ROOT, "%.2f", bal)));
-            head.setItemMeta(im);
-        }
-        return head;
+        return heads.get(p);
     }
 
     private int countInInventory(Player p, Material m) {
@@ -221,102 +213,280 @@ public class TraderGUI {
     }
 
     public void open(Player player, Tab tab) {
-        Inventory inv = buildInventory(player, tab);
-        player.openInventory(inv);
+        open(player, DropManager.DEFAULT_TRADER, tab);
+    }
+
+    public void open(Player player, String traderId, Tab tab) {
+        show(player, buildInventory(player, traderId, tab));
     }
 
     public boolean isOurInventory(Inventory inv) {
         return inv != null && inv.getHolder() instanceof GUIHolder;
     }
 
-    private Inventory buildInventory(Player viewer, Tab tab) {
-        GUIHolder holder = new GUIHolder(tab);
-        String title = TITLE_PREFIX + ChatColor.YELLOW + switch (tab) {
+    private Inventory buildInventory(Player viewer, String traderId, Tab tab) {
+        return buildInventory(viewer, new GUIHolder(tab, traderId));
+    }
+
+    private String titleFor(GUIHolder holder) {
+        return TITLE_PREFIX + ChatColor.YELLOW + switch (holder.tab) {
             case SHOP -> "Магазин";
             case QUESTS -> "Квести";
             case SELL -> "Продаж";
+            case CATALOG -> holder.query != null ? holder.query : categoryName(holder.category);
         };
-        Inventory inv = Bukkit.createInventory(holder, 54, title);
+    }
 
-        // Fill background
-        ItemStack pane = namedItem(Material.GRAY_STAINED_GLASS_PANE, ChatColor.DARK_GRAY + "");
-        for (int i = 0; i < inv.getSize(); i++) inv.setItem(i, pane);
+    private Inventory buildInventory(Player viewer, GUIHolder holder) {
+        Inventory inv = Bukkit.createInventory(holder, 54, titleFor(holder));
+
+        // Static frame in one bulk copy; put() then only overlays the dynamic slots
+        ItemStack[] frame = frame(holder.tab);
+        inv.setContents(frame);
+        System.arraycopy(frame, 0, holder.shown, 0, frame.length);
+
+        renderTab(inv, viewer, holder);
+        return inv;
+    }
 
-        // Tabs on the very top row, positions 2, 4, 6
-        inv.setItem(2, tabItem(Tab.SHOP, tab == Tab.SHOP));
-        inv.setItem(4, tabItem(Tab.QUESTS, tab == Tab.QUESTS));
-        inv.setItem(6, tabItem(Tab.SELL, tab == Tab.SELL));
+    /**
+     * Switches an open view to {@code tab} without reopening it: the holder changes tab, the new frame and
+     * content are applied through put() so only differing slots are sent, and the title follows when the
+     * server supports retitling an open view.
+     */
+    private void switchTab(Player viewer, InventoryView view, GUIHolder holder, Tab tab) {
+        Inventory inv = view.getTopInventory();
+        Session s = sessions.get(viewer.getUniqueId());
+        boolean tracked = s != null && s.holder == holder;
+        if (tracked) sessionsByTab.get(holder.tab).remove(viewer.getUniqueId(), s);
+
+        holder.tab = tab;
+        holder.clearActions();
+        holder.category = null;
+        holder.query = null;
+        holder.pages = null;
+        holder.page = 0;
+        if (tracked) sessionsByTab.get(tab).put(viewer.getUniqueId(), s);
+
+        ItemStack[] frame = frame(tab);
+        for (int i = 0; i < frame.length; i++) put(inv, i, frame[i]);
+        renderTab(inv, viewer, holder);
+        try {
+            view.setTitle(titleFor(holder));
+        } catch (UnsupportedOperationException | NoSuchMethodError ignored) {
+            // Older servers keep the previous title; contents are already correct
+        }
+    }
 
+    private void renderTab(Inventory inv, Player viewer, GUIHolder holder) {
         // Content area (3 rows center)
-        switch (tab) {
-            case SHOP -> fillShop(inv);
+        switch (holder.tab) {
+            case SHOP -> fillShop(inv, viewer);
             case QUESTS -> fillQuests(inv, viewer);
             case SELL -> fillSellOffers(inv);
+            case CATALOG -> fillCatalog(inv);
         }
 
         // Player info bottom-left
-        inv.setItem(45, playerInfoItem(viewer));
+        put(inv, 45, playerInfoItem(viewer));
+    }
 
-        return inv;
+    private ItemStack[] frame(Tab tab) {
+        return frames.computeIfAbsent(tab, this::buildFrame);
     }
 
-    private void fillShop(Inventory inv) {
-        // Show Lucky Blocks on their own centered row, then rotating items centered per row
-        GUIHolder holder = (GUIHolder) inv.getHolder();
+    // Background, tab bar and fixed buttons of a tab; never mutated once built
+    private ItemStack[] buildFrame(Tab tab) {
+        ItemStack[] frame = new ItemStack[54];
+        ItemStack pane = namedItem(Material.GRAY_STAINED_GLASS_PANE, ChatColor.DARK_GRAY + "");
+        Arrays.fill(frame, pane);
 
-        // Clear all content slots first
-        for (int s : contentSlots()) inv.setItem(s, null);
+        // Tabs on the very top row, positions 2, 4, 6; the catalog belongs to the shop tab
+        frame[2] = tabItem(Tab.SHOP, tab == Tab.SHOP || tab == Tab.CATALOG);
+        frame[4] = tabItem(Tab.QUESTS, tab == Tab.QUESTS);
+        frame[6] = tabItem(Tab.SELL, tab == Tab.SELL);
 
-        List<Entry> lucky = buildLuckyEntries();
-        List<Entry> rotating = buildRotatingEntries();
+        switch (tab) {
+            case SHOP -> {
+                // Category browser buttons and search on the bottom row
+                for (int i = 0; i < BROWSABLE.length; i++) frame[BROWSE_BUTTON_SLOTS[i]] = browseButton(BROWSABLE[i]);
+                ItemStack search = namedItem(Material.NAME_TAG, ChatColor.AQUA + "Пошук предмета");
+                ItemMeta sm = search.getItemMeta();
+                sm.setLore(List.of(ChatColor.DARK_GRAY + "Введіть назву в ковадлі, щоб дізнатися ціну"));
+                search.setItemMeta(sm);
+                frame[SEARCH_BUTTON_SLOT] = search;
+            }
+            case CATALOG -> frame[CATALOG_BACK] = buttonItem(Material.OAK_DOOR, ChatColor.RED + "Назад до магазину");
+            default -> { }
+        }
+        return frame;
+    }
 
-        // Row 0: Lucky blocks (centered)
-        int[] row0 = new int[]{19,20,21,22,23,24,25};
-        placeCenteredRow(inv, holder, row0, lucky);
+    public void openCatalog(Player player, String traderId, Category category) {
+        GUIHolder holder = new GUIHolder(Tab.CATALOG, traderId);
+        holder.category = category;
+        show(player, buildInventory(player, holder));
+    }
 
-        // Rows 1 and 2: Rotating items (centered per row)
-        int[] row1 = new int[]{28,29,30,31,32,33,34};
-        int[] row2 = new int[]{37,38,39,40,41,42,43};
-        int firstRowCount = Math.min(rotating.size(), row1.length);
-        placeCenteredRow(inv, holder, row1, rotating.subList(0, firstRowCount));
-        int remaining = rotating.size() - firstRowCount;
-        if (remaining > 0) {
-            int secondRowCount = Math.min(remaining, row2.length);
-            placeCenteredRow(inv, holder, row2, rotating.subList(firstRowCount, firstRowCount + secondRowCount));
-        }
+    private void fillShop(Inventory inv, Player viewer) {
+        // Shared page: Lucky Blocks on their own centered row, then rotating items centered per row
+        GUIHolder holder = (GUIHolder) inv.getHolder();
+
+        placeShopPage(inv, holder, viewer);
 
         // Timer item moved to top-left (slot 0): shows time remaining
-        inv.setItem(0, timerItem());
+        put(inv, 0, timerItem(dropManager.rotationFor(holder.traderId)));
+        // Browser and search buttons are part of the SHOP frame
     }
 
-    private List<Entry> buildEntries() {
-        List<Entry> entries = new ArrayList<>();
-        // Lucky blocks: common, rare, epic (always present)
-        entries.add(luckyEntry("common", plugin.getConfig().getDouble("lucky_block.prices.common", plugin.getConfig().getDouble("lucky_block.price", 500.0))));
-        entries.add(luckyEntry("rare", plugin.getConfig().getDouble("lucky_block.prices.rare", 1500.0)));
-        entries.add(luckyEntry("epic", plugin.getConfig().getDouble("lucky_block.prices.epic", 3000.0)));
+    // --- Category browser ---
+    private void fillCatalog(Inventory inv) {
+        GUIHolder holder = (GUIHolder) inv.getHolder();
+        ItemStack[][] pages = holder.pages != null ? holder.pages : catalogPages(holder.category);
+        holder.page = Math.max(0, Math.min(holder.page, pages.length - 1));
+        ItemStack[] page = pages[holder.page];
+        for (int i = 0; i < CATALOG_SLOTS.length; i++) put(inv, CATALOG_SLOTS[i], page[i]);
+
+        put(inv, 0, namedItem(Material.PAPER, ChatColor.AQUA + "Сторінка " + ChatColor.YELLOW + (holder.page + 1) + "/" + pages.length));
+        ItemStack pane = frame(Tab.CATALOG)[CATALOG_PREV];
+        put(inv, CATALOG_PREV, holder.page > 0 ? buttonItem(Material.ARROW, ChatColor.YELLOW + "« Попередня") : pane);
+        put(inv, CATALOG_NEXT, holder.page < pages.length - 1 ? buttonItem(Material.ARROW, ChatColor.YELLOW + "Наступна »") : pane);
+    }
+
+    private ItemStack[][] catalogPages(Category cat) {
+        long version = catalog.priceVersion();
+        long now = System.currentTimeMillis();
+        long[] stamp = catalogPagesStamp.get(cat);
+        ItemStack[][] pages = catalogPages.get(cat);
+        if (pages != null && stamp[0] == version && now - stamp[1] < PAGE_MAX_AGE_MS) return pages;
+
+        pages = renderPages(catalog.find(MaterialFilter.category(cat)));
+        catalogPages.put(cat, pages);
+        catalogPagesStamp.put(cat, new long[]{version, now});
+        return pages;
+    }
+
+    // --- Search (anvil input) ---
+    private void openSearch(Player p, String traderId) {
+        InventoryView view = p.openAnvil(null, true);
+        if (view == null) {
+            p.sendMessage(ChatColor.YELLOW + "Пошук недоступний. Використайте /trader price <назва>.");
+            return;
+        }
+        view.getTopInventory().setItem(0, searchPlaceholder());
+        searching.put(p.getUniqueId(), traderId);
+    }
 
-        // Rotating drop items
-        List<ShopItem> drop = new ArrayList<>(dropManager.getCurrentDrop());
-        Set<String> usedGroups = new HashSet<>();
-        double coeff = plugin.getConfig().getDouble("shop.enchant.random.coefficient", 0.25);
-        double cap = plugin.getConfig().getDouble("shop.enchant.max_multiplier", 3.0);
-        for (ShopItem si : drop) {
-            String group = groupKeyFor(si.getMaterial());
-            if (group != null && usedGroups.contains(group)) continue; // enforce uniqueness for certain families
-            ItemStack give = new ItemStack(si.getMaterial());
-            // Apply random enchants when appropriate and measure quality
-            double quality = 0.0;
-            if (isArmor(si.getMaterial()) || isWeapon(si.getMaterial())) {
-                quality = applyRandomEnchants(give);
-            }
-            double base = catalog.dynamicShopPrice(si.getMaterial());
-            double mult = Math.min(cap, 1.0 + coeff * quality);
-            double price = Math.round(base * mult * 100.0) / 100.0;
-            entries.add(new Entry(si, null, price, give));
-            if (group != null) usedGroups.add(group);
+    public boolean isSearchView(InventoryView view) {
+        return view != null && view.getTopInventory() instanceof AnvilInventory
+                && searching.containsKey(view.getPlayer().getUniqueId());
+    }
+
+    public void handlePrepareSearch(PrepareAnvilEvent e) {
+        // Free rename so the result slot is always clickable, whatever the player's level
+        AnvilInventory anvil = e.getInventory();
+        anvil.setRepairCost(0);
+        String text = anvil.getRenameText();
+        e.setResult(text == null || text.isBlank() ? null : namedItem(Material.PAPER, text));
+    }
+
+    public void handleSearchClick(InventoryClickEvent e) {
+        e.setCancelled(true);
+        if (e.getRawSlot() != 2) return;
+        Player p = (Player) e.getWhoClicked();
+        AnvilInventory anvil = (AnvilInventory) e.getView().getTopInventory();
+        String query = anvil.getRenameText();
+        if (query == null || query.isBlank()) return;
+        removeSearchPlaceholder(anvil);
+        String traderId = searching.remove(p.getUniqueId());
+        Bukkit.getScheduler().runTask(plugin, () -> openSearchResults(p, traderId, query.trim()));
+    }
+
+    public void onSearchClose(org.bukkit.event.inventory.InventoryCloseEvent e) {
+        // Drop the placeholder paper so the server doesn't hand it to the player
+        removeSearchPlaceholder(e.getView().getTopInventory());
+        searching.remove(e.getPlayer().getUniqueId());
+    }
+
+    private ItemStack searchPlaceholder() {
+        return namedItem(Material.PAPER, "Назва предмета");
+    }
+
+    // Only our paper is removed; anything else in the anvil is left for the server to return to the player
+    private void removeSearchPlaceholder(Inventory anvil) {
+        ItemStack first = anvil.getItem(0);
+        if (first != null && first.isSimilar(searchPlaceholder())) anvil.setItem(0, null);
+    }
+
+    private void openSearchResults(Player p, String traderId, String query) {
+        List<Material> found = catalog.search(query, SEARCH_RESULT_LIMIT);
+        openMaterialList(p, traderId, "Пошук: " + query, found);
+        if (found.isEmpty()) p.sendMessage(ChatColor.YELLOW + "Нічого не знайдено за запитом: " + query);
+    }
+
+    /** Opens a read-only catalog view over {@code materials} (search or filter results). */
+    public void openMaterialList(Player p, String title, List<Material> materials) {
+        openMaterialList(p, DropManager.DEFAULT_TRADER, title, materials);
+    }
+
+    private void openMaterialList(Player p, String traderId, String title, List<Material> materials) {
+        GUIHolder holder = new GUIHolder(Tab.CATALOG, traderId);
+        holder.query = title;
+        holder.pages = renderPages(materials);
+        show(p, buildInventory(p, holder));
+    }
+
+    private ItemStack[][] renderPages(List<Material> materials) {
+        int per = CATALOG_SLOTS.length;
+        ItemStack[][] pages = new ItemStack[Math.max(1, (materials.size() + per - 1) / per)][per];
+        for (int i = 0; i < materials.size(); i++) {
+            Material m = materials.get(i);
+            pages[i / per][i % per] = catalogDisplayItem(catalog.toShopItem(m), catalog.dynamicShopPrice(m));
         }
-        return entries;
+        return pages;
+    }
+
+    private ItemStack catalogDisplayItem(ShopItem si, double price) {
+        ItemStack it = new ItemStack(si.getMaterial());
+        ItemMeta meta = it.getItemMeta();
+        if (meta == null) return it;
+        boolean untiered = si.getCategory() == Category.SPAWN_EGGS || si.getCategory() == Category.GARBAGE;
+        meta.setDisplayName(untiered ? ChatColor.YELLOW + prettyName(si.getMaterial().name())
+                : si.getTier().color() + si.getTier().display() + ChatColor.GRAY + " | " + ChatColor.YELLOW + prettyName(si.getMaterial().name()));
+        meta.setLore(List.of(
+                ChatColor.DARK_GRAY + "Ціна: " + ChatColor.GOLD + price,
+                ChatColor.DARK_GRAY + "Купується лише під час ротації"
+        ));
+        meta.addItemFlags(ItemFlag.HIDE_ATTRIBUTES);
+        it.setItemMeta(meta);
+        return it;
+    }
+
+    private ItemStack browseButton(Category cat) {
+        Material icon = switch (cat) {
+            case ARMORS -> Material.IRON_CHESTPLATE;
+            case TOOLS_WEAPONS -> Material.IRON_SWORD;
+            case BLOCKS -> Material.CRAFTING_TABLE;
+            case SPAWN_EGGS -> Material.VILLAGER_SPAWN_EGG;
+            default -> Material.CHEST;
+        };
+        ItemStack it = namedItem(icon, ChatColor.AQUA + categoryName(cat));
+        ItemMeta meta = it.getItemMeta();
+        meta.setLore(List.of(ChatColor.DARK_GRAY + "Переглянути каталог і поточні ціни"));
+        it.setItemMeta(meta);
+        return it;
+    }
+
+    private String categoryName(Category cat) {
+        if (cat == null) return "Каталог";
+        return switch (cat) {
+            case ARMORS -> "Броня";
+            case TOOLS_WEAPONS -> "Інструменти та зброя";
+            case BLOCKS -> "Блоки";
+            case SPAWN_EGGS -> "Яйця призову";
+            case LUCKY_BLOCKS -> "Лакі Блоки";
+            default -> "Каталог";
+        };
     }
 
     private List<Entry> buildLuckyEntries() {
@@ -330,61 +500,118 @@ public class TraderGUI {
         return entries;
     }
 
-    private List<Entry> buildRotatingEntries() {
-        List<Entry> entries = new ArrayList<>();
-        List<ShopItem> drop = new ArrayList<>(dropManager.getCurrentDrop());
-        Set<String> usedGroups = new HashSet<>();
-        double coeff = plugin.getConfig().getDouble("shop.enchant.random.coefficient", 0.25);
-        double cap = plugin.getConfig().getDouble("shop.enchant.max_multiplier", 3.0);
-        for (ShopItem si : drop) {
-            String group = groupKeyFor(si.getMaterial());
-            if (group != null && usedGroups.contains(group)) continue; // enforce uniqueness for certain families
-            ItemStack give = new ItemStack(si.getMaterial());
-            double quality = 0.0;
-            if (isArmor(si.getMaterial()) || isWeapon(si.getMaterial())) {
-                quality = applyRandomEnchants(give);
-            }
-            double base = catalog.dynamicShopPrice(si.getMaterial());
-            double mult = Math.min(cap, 1.0 + coeff * quality);
-            double price = Math.round(base * mult * 100.0) / 100.0;
-            entries.add(new Entry(si, null, price, give));
-            if (group != null) usedGroups.add(group);
+    private List<Entry> buildRotatingEntries(PreparedDrop drop) {
+        // Items, enchants and enchant multipliers were fixed when the drop was prepared; only the live price is read here
+        if (drop == null) return new ArrayList<>();
+        List<Entry> entries = new ArrayList<>(drop.size());
+        for (int i = 0; i < drop.size(); i++) {
+            entries.add(new Entry(drop.item(i), null, drop.price(catalog, i), drop.template(i), drop, i));
         }
         return entries;
     }
 
-    private void placeCenteredRow(Inventory inv, GUIHolder holder, int[] rowSlots, List<Entry> items) {
+    // Copy the shared page into one viewer's inventory; setItem copies the stack, so the page stays untouched
+    private void placeShopPage(Inventory inv, GUIHolder holder, Player viewer) {
+        TraderRotation rotation = dropManager.rotationFor(holder.traderId);
+        ShopPage page;
+        if (rotation != null && rotation.isPersonal()) {
+            // Personal drops are rendered per view and kept on the holder, so nothing outlives the open inventory
+            PreparedDrop drop = dropManager.dropFor(rotation, viewer.getUniqueId());
+            page = holder.personalPage;
+            if (!isFresh(page, drop)) {
+                page = renderShopPage(drop);
+                holder.personalPage = page;
+            }
+        } else {
+            page = shopPage(rotation);
+        }
+        System.arraycopy(page.entries, 0, holder.entries, 0, page.entries.length);
+        for (int s : CONTENT_SLOTS) put(inv, s, page.items[s]);
+    }
+
+    private ShopPage shopPage(TraderRotation rotation) {
+        PreparedDrop drop = rotation != null ? rotation.getCurrent() : null;
+        String key = rotation != null ? rotation.traderId() : DropManager.DEFAULT_TRADER;
+        ShopPage page = shopPages.get(key);
+        if (isFresh(page, drop)) return page;
+
+        page = renderShopPage(drop);
+        shopPages.put(key, page);
+        return page;
+    }
+
+    // Same rules as the catalog pages: a new drop, a price change or plain age (lazy decay) rebuilds the page
+    private boolean isFresh(ShopPage page, PreparedDrop drop) {
+        return page != null && page.drop == drop && page.priceVersion == catalog.priceVersion()
+                && System.currentTimeMillis() - page.builtAt < PAGE_MAX_AGE_MS;
+    }
+
+    // Whether a Shop viewer is looking at a page that has aged out
+    private boolean shopPagesStale() {
+        long now = System.currentTimeMillis();
+        for (Session s : viewers(Tab.SHOP)) {
+            TraderRotation rotation = dropManager.rotationFor(s.holder.traderId);
+            ShopPage page = rotation != null && rotation.isPersonal() ? s.holder.personalPage
+                    : shopPages.get(rotation != null ? rotation.traderId() : DropManager.DEFAULT_TRADER);
+            if (page != null && now - page.builtAt >= PAGE_MAX_AGE_MS) return true;
+        }
+        return false;
+    }
+
+    private ShopPage renderShopPage(PreparedDrop drop) {
+        ShopPage page = new ShopPage(drop, catalog.priceVersion());
+        List<Entry> lucky = buildLuckyEntries();
+        List<Entry> rotating = buildRotatingEntries(drop);
+
+        // Row 0: Lucky blocks (centered)
+        int[] row0 = new int[]{19,20,21,22,23,24,25};
+        placeCenteredRow(page, row0, lucky);
+
+        // Rows 1 and 2: Rotating items (centered per row)
+        int[] row1 = new int[]{28,29,30,31,32,33,34};
+        int[] row2 = new int[]{37,38,39,40,41,42,43};
+        int firstRowCount = Math.min(rotating.size(), row1.length);
+        placeCenteredRow(page, row1, rotating.subList(0, firstRowCount));
+        int remaining = rotating.size() - firstRowCount;
+        if (remaining > 0) {
+            int secondRowCount = Math.min(remaining, row2.length);
+            placeCenteredRow(page, row2, rotating.subList(firstRowCount, firstRowCount + secondRowCount));
+        }
+        return page;
+    }
+
+    private void placeCenteredRow(ShopPage page, int[] rowSlots, List<Entry> items) {
         int n = Math.min(items.size(), rowSlots.length);
         int offset = (rowSlots.length - n) / 2;
         for (int i = 0; i < n; i++) {
             int slot = rowSlots[offset + i];
             Entry en = items.get(i);
-            inv.setItem(slot, toDisplayItem(en));
-            holder.entries.put(slot, en);
+            page.items[slot] = toDisplayItem(en);
+            page.entries[slot] = en;
         }
     }
 
     private void fillSell(Inventory inv) {
         // Instruction
-        inv.setItem(0, namedItem(Material.CLOCK, ChatColor.AQUA + "Наступна ротація через: " + ChatColor.YELLOW + "--:--"));
+        put(inv, 0, namedItem(Material.CLOCK, ChatColor.AQUA + "Наступна ротація через: " + ChatColor.YELLOW + "--:--"));
         // Buttons
-        inv.setItem(7, buttonItem(Material.BARRIER, ChatColor.RED + "Очистити"));
-        inv.setItem(8, buttonItem(Material.EMERALD_BLOCK, ChatColor.GREEN + "Підтвердити продаж (0)"));
+        put(inv, 7, buttonItem(Material.BARRIER, ChatColor.RED + "Очистити"));
+        put(inv, 8, buttonItem(Material.EMERALD_BLOCK, ChatColor.GREEN + "Підтвердити продаж (0)"));
         // Content area left empty; players will drag items here
-        for (int s : contentSlots()) inv.setItem(s, null);
+        for (int s : CONTENT_SLOTS) put(inv, s, null);
     }
 
     private void fillSellOffers(Inventory inv) {
-        // Clear content area
-        for (int s : contentSlots()) inv.setItem(s, null);
-        inv.setItem(0, sellTimerItem());
+        put(inv, 0, sellTimerItem());
+        // Render the whole content area first, then apply only what changed
+        ItemStack[] content = new ItemStack[inv.getSize()];
 
         GUIHolder holder = (GUIHolder) inv.getHolder();
-        holder.sellSlots.clear();
+        Arrays.fill(holder.sellSlots, null);
 
         List<SellRotationManager.Offer> offers = sellManager.getOffers();
         // Place up to 20 offers across rows
-        int[] slots = contentSlots();
+        int[] slots = CONTENT_SLOTS;
         int placed = 0;
         for (int i = 0; i < slots.length && placed < 20 && i < offers.size(); i++) {
             int s = slots[i];
@@ -415,28 +642,31 @@ public class TraderGUI {
                 // Show group size as the stack count (bottom-right number)
                 it.setAmount(Math.max(1, group));
             }
-            inv.setItem(s, it);
-            holder.sellSlots.put(s, o.material);
+            content[s] = it;
+            holder.sellSlots[s] = o.material;
             placed++;
         }
+        for (int s : slots) put(inv, s, content[s]);
     }
 
     private void fillQuests(Inventory inv, Player viewer) {
         // Ensure daily reset for this viewer
         questManager.ensureDailySynced(viewer);
-        // Clear content area
-        for (int s : contentSlots()) inv.setItem(s, null);
-        inv.setItem(0, questTimerItem());
+        put(inv, 0, questTimerItem());
+        // Render the whole content area first, then apply only what changed
+        ItemStack[] content = new ItemStack[inv.getSize()];
 
         GUIHolder holder = (GUIHolder) inv.getHolder();
-        holder.questSlots.clear();
+        Arrays.fill(holder.questSlots, null);
 
         List<QuestDef> defs = new ArrayList<>(questManager.getAll());
+        // One pass over the viewer's inventory serves every FETCH quest below
+        InventoryCounts held = InventoryCounts.of(viewer.getInventory().getContents());
         // Build quest items
         List<ItemStack> items = new ArrayList<>();
         List<String> ids = new ArrayList<>();
         for (QuestDef def : defs) {
-            ItemStack it = questDisplayItem(viewer, def);
+            ItemStack it = questDisplayItem(viewer, def, held);
             items.add(it);
             ids.add(def.getId());
         }
@@ -453,14 +683,15 @@ public class TraderGUI {
             int offset = (row.length - n) / 2;
             for (int i = 0; i < n; i++) {
                 int slot = row[offset + i];
-                inv.setItem(slot, items.get(index));
-                holder.questSlots.put(slot, ids.get(index));
+                content[slot] = items.get(index);
+                holder.questSlots[slot] = ids.get(index);
                 index++;
             }
         }
+        for (int s : CONTENT_SLOTS) put(inv, s, content[s]);
     }
 
-    private ItemStack questDisplayItem(Player p, QuestDef def) {
+    private ItemStack questDisplayItem(Player p, QuestDef def, InventoryCounts held) {
         boolean completed = questManager.isCompleted(p.getUniqueId(), def.getId());
         boolean claimed = questManager.isClaimed(p.getUniqueId(), def.getId());
         int req = def.getRequired();
@@ -470,7 +701,7 @@ public class TraderGUI {
         if (def.getKind() == QuestDef.Kind.FETCH && !claimed) {
             Material target = def.getTargetMaterial();
             if (target != null) {
-                int have = countInInventory(p, target);
+                int have = held.count(target);
                 progress = Math.min(have, req);
                 if (have >= req) virtuallyReady = true;
             }
@@ -518,102 +749,56 @@ public class TraderGUI {
         };
     }
 
-    private int[] contentSlots() {
-        // Use rows 3-5 (indexes 18..44) excluding borders
-        return new int[]{
+    // Rows 3-5 (indexes 18..44) excluding borders
+    private static final int[] CONTENT_SLOTS = {
             19,20,21,22,23,24,25,
             28,29,30,31,32,33,34,
             37,38,39,40,41,42,43
-        };
-    }
+    };
 
     // --- Sell helpers ---
-    private boolean isSellable(ItemStack stack) {
-        if (stack == null || stack.getType() == Material.AIR) return false;
-        Material m = stack.getType();
-        // Hard-block certain types
-        if (m.name().endsWith("SPAWN_EGG")) return false;
-        if (catalog.categorize(m) == Category.LUCKY_BLOCKS) return false;
-        // Block by blacklist
-        List<String> bl = plugin.getConfig().getStringList("sell.blacklist");
-        if (bl != null && bl.stream().map(String::toUpperCase).anyMatch(s -> s.equals(m.name()))) return false;
-        // Optionally block garbage category entirely
-        boolean blockGarbage = plugin.getConfig().getBoolean("sell.block_garbage_category", false);
-        if (blockGarbage && catalog.categorize(m) == Category.GARBAGE) return false;
-        return true;
-    }
-
-    private double sellPrice(ItemStack stack) {
-        if (stack == null || stack.getType() == Material.AIR) return 0.0;
-        double sellMult = plugin.getConfig().getDouble("sell.base_multiplier", 0.45);
-        Material m = stack.getType();
-        // Determine the current buy price for this material (what the player would pay)
-        double shopUnit = m.name().endsWith("SPAWN_EGG") ? plugin.getConfig().getDouble("spawn_egg.price", 2500.0) : catalog.dynamicShopPrice(m);
-        // Apply actual enchant-based multiplier for the sold item
-        double enchantMult = computeEnchantMultiplier(stack);
-        double total = shopUnit * enchantMult * sellMult * stack.getAmount();
-        return Math.round(total * 100.0) / 100.0;
-    }
-
-    private double computeEnchantMultiplier(ItemStack stack) {
-        boolean enabled = plugin.getConfig().getBoolean("sell.enchant.enabled", true);
-        if (!enabled) return 1.0;
-        Map<org.bukkit.enchantments.Enchantment, Integer> ench = stack.getEnchantments();
-        if (ench == null || ench.isEmpty()) return 1.0;
-        boolean includeCurses = plugin.getConfig().getBoolean("sell.enchant.include_curses", false);
-        double perLevel = plugin.getConfig().getDouble("sell.enchant.per_level_bonus", 0.05); // +5% per level by default
-        int totalLevels = 0;
-        for (Map.Entry<org.bukkit.enchantments.Enchantment, Integer> e : ench.entrySet()) {
-            org.bukkit.enchantments.Enchantment enchType = e.getKey();
-            int lvl = Math.max(0, e.getValue());
-            boolean cursed;
-            try {
-                cursed = (boolean) org.bukkit.enchantments.Enchantment.class.getMethod("isCursed").invoke(enchType);
-            } catch (Throwable ignore) {
-                cursed = enchType.getKey().getKey().toUpperCase(Locale.ROOT).contains("CURSE");
-            }
-            if (!includeCurses && cursed) continue;
-            totalLevels += lvl;
-        }
-        double mult = 1.0 + perLevel * totalLevels;
-        double cap = plugin.getConfig().getDouble("sell.enchant.max_multiplier", 3.0);
-        if (mult > cap) mult = cap;
-        return mult;
-    }
-
     private void updateSellPreview(Inventory inv) {
         // total and per-slot highlighting
-        double total = 0.0;
-        for (int s : contentSlots()) {
+        int[] slots = CONTENT_SLOTS;
+        for (int s : slots) {
             ItemStack it = inv.getItem(s);
             if (it == null || it.getType() == Material.AIR) continue;
-            if (!isSellable(it)) {
+            if (!catalog.isSellable(it)) {
                 // remove illegal items from sell area
-                inv.setItem(s, null);
+                inv.setItem(s, null); // player-placed stack, never tracked by put()
                 continue;
             }
             // Remove previous preview line to avoid duplication
             sanitizeSellMeta(it);
-            double price = sellPrice(it);
-            total += price;
+        }
+        InventoryQuote quote = catalog.quote(sellAreaContents(inv, slots));
+        for (int i = 0; i < slots.length; i++) {
+            if (!quote.sellable[i]) continue;
+            ItemStack it = inv.getItem(slots[i]);
             // add price lore (temporary while in sell UI)
             ItemMeta meta = it.getItemMeta();
             if (meta != null) {
                 List<String> lore = new ArrayList<>();
                 List<String> orig = meta.getLore();
                 if (orig != null) lore.addAll(orig);
-                lore.add(ChatColor.GREEN + "Продається" + ChatColor.DARK_GRAY + " | Ціна: " + ChatColor.GOLD + price);
+                lore.add(ChatColor.GREEN + "Продається" + ChatColor.DARK_GRAY + " | Ціна: " + ChatColor.GOLD + quote.slotPrices[i]);
                 meta.setLore(lore);
                 it.setItemMeta(meta);
             }
         }
         // Update confirm button with total
-        ItemStack confirm = buttonItem(Material.EMERALD_BLOCK, ChatColor.GREEN + "Підтвердити продаж (" + ChatColor.GOLD + total + ChatColor.GREEN + ")");
-        inv.setItem(8, confirm);
+        ItemStack confirm = buttonItem(Material.EMERALD_BLOCK, ChatColor.GREEN + "Підтвердити продаж (" + ChatColor.GOLD + quote.total + ChatColor.GREEN + ")");
+        put(inv, 8, confirm);
+    }
+
+    private ItemStack[] sellAreaContents(Inventory inv, int[] slots) {
+        ItemStack[] contents = new ItemStack[slots.length];
+        for (int i = 0; i < slots.length; i++) contents[i] = inv.getItem(slots[i]);
+        return contents;
     }
 
     private void clearSellArea(Inventory inv, Player p) {
-        for (int s : contentSlots()) {
+        for (int s : CONTENT_SLOTS) {
             ItemStack it = inv.getItem(s);
             if (it != null && it.getType() != Material.AIR) {
                 sanitizeSellMeta(it);
@@ -629,29 +814,20 @@ public class TraderGUI {
     }
 
     private void refreshPlayerInfos() {
-        for (org.bukkit.entity.Player p : Bukkit.getOnlinePlayers()) {
-            Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-            if (top == null) continue;
-            if (!(top.getHolder() instanceof GUIHolder holder)) continue;
-            // Any of our tabs shows player info in slot 45
-            top.setItem(45, playerInfoItem(p));
-        }
+        // Any of our tabs shows player info in slot 45
+        for (Session s : new ArrayList<>(sessions.values())) put(s.top, 45, playerInfoItem(s.player));
     }
 
     private void confirmSell(Inventory inv, Player p) {
-        double total = 0.0;
-        Map<Material, Integer> soldCounts = new HashMap<>();
-        for (int s : contentSlots()) {
-            ItemStack it = inv.getItem(s);
-            if (it == null || it.getType() == Material.AIR) continue;
-            if (!isSellable(it)) {
-                // shouldn't happen due to preview, skip
-                continue;
-            }
-            total += sellPrice(it);
-            soldCounts.merge(it.getType(), it.getAmount(), Integer::sum);
+        int[] slots = CONTENT_SLOTS;
+        InventoryQuote quote = catalog.quote(sellAreaContents(inv, slots));
+        double total = quote.total;
+        for (int i = 0; i < slots.length; i++) {
+            // unsellable stacks shouldn't be here due to preview; leave them untouched
+            if (!quote.sellable[i]) continue;
+            ItemStack it = inv.getItem(slots[i]);
             sanitizeSellMeta(it);
-            inv.setItem(s, null);
+            inv.setItem(slots[i], null);
         }
         if (total <= 0.0) {
             p.sendMessage(ChatColor.RED + "Немає предметів для продажу.");
@@ -664,8 +840,8 @@ public class TraderGUI {
         if (economy.deposit(p, total)) {
             p.sendMessage(ChatColor.GREEN + "Продано предмети на " + ChatColor.GOLD + total + ChatColor.GREEN + ".");
             // Record dynamic sales after successful payout, then ping a sound
-            for (Map.Entry<Material, Integer> en : soldCounts.entrySet()) {
-                catalog.recordSale(en.getKey(), en.getValue());
+            for (int i = 0; i < quote.distinct(); i++) {
+                if (quote.soldAt(i) > 0) catalog.recordSale(quote.materialAt(i), quote.soldAt(i));
             }
             p.playSound(p.getLocation(), Sound.ENTITY_VILLAGER_YES, 1f, 1.0f);
         } else {
@@ -675,7 +851,39 @@ public class TraderGUI {
     }
 
     public void onClose(org.bukkit.event.inventory.InventoryCloseEvent e) {
-        // No special handling needed since SELL tab is removed
+        Session s = sessions.get(e.getPlayer().getUniqueId());
+        // Opening another of our views closes this one first; only drop the session that belongs to the closed inventory
+        if (s != null && s.top == e.getView().getTopInventory()) endSession(s);
+    }
+
+    public void onQuit(Player p) {
+        Session s = sessions.get(p.getUniqueId());
+        if (s != null) endSession(s);
+        searching.remove(p.getUniqueId());
+        heads.evict(p.getUniqueId());
+    }
+
+    // --- Viewer sessions ---
+    private void show(Player p, Inventory inv) {
+        p.openInventory(inv);
+        // openInventory can be refused (e.g. cancelled by another plugin); register only what is actually shown
+        if (p.getOpenInventory() == null || p.getOpenInventory().getTopInventory() != inv) return;
+        Session prev = sessions.get(p.getUniqueId());
+        if (prev != null) endSession(prev);
+        Session s = new Session(p, inv, (GUIHolder) inv.getHolder());
+        sessions.put(p.getUniqueId(), s);
+        sessionsByTab.get(s.holder.tab).put(p.getUniqueId(), s);
+    }
+
+    private void endSession(Session s) {
+        sessions.remove(s.player.getUniqueId(), s);
+        sessionsByTab.get(s.holder.tab).remove(s.player.getUniqueId(), s);
+    }
+
+    // Snapshot of the viewers of a tab, so refreshes may open/close views while iterating
+    private List<Session> viewers(Tab tab) {
+        Map<UUID, Session> m = sessionsByTab.get(tab);
+        return m.isEmpty() ? List.of() : new ArrayList<>(m.values());
     }
 
     private void sanitizeSellMeta(ItemStack it) {
@@ -706,12 +914,12 @@ public class TraderGUI {
 
     private ItemStack tabItem(Tab tab, boolean selected) {
         Material mat = switch (tab) {
-            case SHOP -> Material.EMERALD;
+            case SHOP, CATALOG -> Material.EMERALD;
             case QUESTS -> Material.BOOK;
             case SELL -> Material.CHEST;
         };
         String name = (selected ? ChatColor.GREEN + "» " : ChatColor.GRAY + "") + switch (tab) {
-            case SHOP -> "Магазин";
+            case SHOP, CATALOG -> "Магазин";
             case QUESTS -> "Квести";
             case SELL -> "Продаж";
         } + (selected ? ChatColor.GREEN + " «" : "");
@@ -754,139 +962,160 @@ public class TraderGUI {
         int slot = e.getRawSlot();
         Player p = (Player) e.getWhoClicked();
 
-        // Top-level tabs
+        // Top-level tabs, switched in place
         if (slot == 2) {
-            p.openInventory(buildInventory(p, Tab.SHOP));
+            if (holder.tab != Tab.SHOP) switchTab(p, e.getView(), holder, Tab.SHOP);
             return;
         } else if (slot == 4) {
-            p.openInventory(buildInventory(p, Tab.QUESTS));
+            if (holder.tab != Tab.QUESTS) switchTab(p, e.getView(), holder, Tab.QUESTS);
             return;
         } else if (slot == 6) {
-            p.openInventory(buildInventory(p, Tab.SELL));
+            if (holder.tab != Tab.SELL) switchTab(p, e.getView(), holder, Tab.SELL);
             return;
         }
 
+        if (holder.tab == Tab.SHOP) {
+            if (slot == SEARCH_BUTTON_SLOT) {
+                p.closeInventory();
+                Bukkit.getScheduler().runTask(plugin, () -> openSearch(p, holder.traderId));
+                return;
+            }
+            for (int i = 0; i < BROWSE_BUTTON_SLOTS.length; i++) {
+                if (slot == BROWSE_BUTTON_SLOTS[i]) {
+                    openCatalog(p, holder.traderId, BROWSABLE[i]);
+                    return;
+                }
+            }
+        }
+
+        if (holder.tab == Tab.CATALOG) {
+            // Read-only browser: only navigation buttons react
+            if (slot == CATALOG_BACK) {
+                switchTab(p, e.getView(), holder, Tab.SHOP);
+            } else if (slot == CATALOG_PREV && holder.page > 0) {
+                holder.page--;
+                fillCatalog(topInv);
+            } else if (slot == CATALOG_NEXT) {
+                holder.page++;
+                fillCatalog(topInv);
+            }
+            return;
+        }
+
+        // Content clicks resolve with one read of the slot's action; bottom-inventory and outside clicks have none
+        if (!inTop || slot < 0) return;
+
         if (holder.tab == Tab.SHOP) {
             // Purchasing in content area
-            int[] slots = contentSlots();
-            for (int s : slots) {
-                if (slot == s) {
-                    ItemStack clicked = e.getCurrentItem();
-                    if (clicked == null || clicked.getType() == Material.AIR) return;
-                    Entry en = holder.entries.get(s);
-                    if (en == null) return;
-                    // Charge the precomputed entry price so random enchant scaling remains consistent
-                    double price = en.price;
-                    if (!economy.isEnabled()) {
-                        p.sendMessage(ChatColor.RED + "Економіка недоступна. Встановіть Vault.");
-                        return;
-                    }
-                    if (!economy.withdraw(p, price)) {
-                        p.sendMessage(ChatColor.RED + "Недостатньо грошей. Ціна: " + price);
-                        return;
-                    }
-                    if (en.luckyTier != null) {
-                        // Execute command to give lucky block, map 'rare' to 'gold' for external command compatibility
-                        String tierStr = en.luckyTier.toLowerCase(Locale.ROOT);
-                        if ("rare".equals(tierStr)) tierStr = "gold";
-                        String cmd = String.format("luckyblocks give %s %s 1", p.getName(), tierStr);
-                        Bukkit.dispatchCommand(Bukkit.getConsoleSender(), cmd);
-                        p.sendMessage(ChatColor.GREEN + "Придбано Лакі Блок (" + tierStr + ") за " + ChatColor.GOLD + price);
-                    } else {
-                        ItemStack give = en.give;
-                        p.getInventory().addItem(give);
-                        p.sendMessage(ChatColor.GREEN + "Придбано " + ChatColor.YELLOW + en.item.getMaterial().name() + ChatColor.GREEN + " за " + ChatColor.GOLD + price);
-                        // Record dynamic pricing purchase and refresh the shop UI
-                        catalog.recordPurchase(en.item.getMaterial());
-                        p.playSound(p.getLocation(), Sound.ENTITY_VILLAGER_YES, 1f, 1.2f);
-                        Bukkit.getScheduler().runTask(plugin, this::refreshShopContent);
-                    }
+            Entry en = holder.entries[slot];
+            if (en != null) {
+                ItemStack clicked = e.getCurrentItem();
+                if (clicked == null || clicked.getType() == Material.AIR) return;
+                // Charge the precomputed entry price so random enchant scaling remains consistent
+                double price = en.price;
+                if (!economy.isEnabled()) {
+                    p.sendMessage(ChatColor.RED + "Економіка недоступна. Встановіть Vault.");
                     return;
                 }
+                if (!economy.withdraw(p, price)) {
+                    p.sendMessage(ChatColor.RED + "Недостатньо грошей. Ціна: " + price);
+                    return;
+                }
+                if (en.luckyTier != null) {
+                    // Execute command to give lucky block, map 'rare' to 'gold' for external command compatibility
+                    String tierStr = en.luckyTier.toLowerCase(Locale.ROOT);
+                    if ("rare".equals(tierStr)) tierStr = "gold";
+                    String cmd = String.format("luckyblocks give %s %s 1", p.getName(), tierStr);
+                    Bukkit.dispatchCommand(Bukkit.getConsoleSender(), cmd);
+                    p.sendMessage(ChatColor.GREEN + "Придбано Лакі Блок (" + tierStr + ") за " + ChatColor.GOLD + price);
+                } else {
+                    // Entry stacks are shared drop templates; hand out a copy
+                    ItemStack give = en.give.clone();
+                    p.getInventory().addItem(give);
+                    p.sendMessage(ChatColor.GREEN + "Придбано " + ChatColor.YELLOW + en.item.getMaterial().name() + ChatColor.GREEN + " за " + ChatColor.GOLD + price);
+                    // Record dynamic pricing purchase and refresh the shop UI
+                    catalog.recordPurchase(en.item.getMaterial());
+                    if (en.drop != null) dropManager.recordPurchase(holder.traderId, p.getUniqueId(), en.drop, en.dropIndex);
+                    p.playSound(p.getLocation(), Sound.ENTITY_VILLAGER_YES, 1f, 1.2f);
+                    refreshShopContent();
+                }
+                return;
             }
         }
 
         if (holder.tab == Tab.SELL) {
-            int[] slots = contentSlots();
-            for (int s : slots) {
-                if (slot == s) {
-                    Material mat = holder.sellSlots.get(s);
-                    if (mat == null) return;
-                    if (!economy.isEnabled()) {
-                        p.sendMessage(ChatColor.RED + "Економіка недоступна. Встановіть Vault.");
-                        return;
-                    }
-                    // Count in inventory and compute possible groups
-                    int haveItems = countInInventory(p, mat);
-                    if (haveItems <= 0) {
-                        p.sendMessage(ChatColor.YELLOW + "У вас немає цього предмета в інвентарі.");
-                        return;
-                    }
-                    SellRotationManager.Offer offer = sellManager.getOffer(mat);
-                    if (offer == null || offer.disabled || offer.currentPrice <= 0.0) {
-                        p.sendMessage(ChatColor.RED + "Цей товар більше не купується.");
-                        Bukkit.getScheduler().runTask(plugin, () -> fillSellOffers(topInv));
-                        return;
-                    }
-                    int groupSize = Math.max(1, offer.groupSize);
-                    int haveGroups = haveItems / groupSize;
-                    int maxUnits = sellManager.maxSellableUnits(offer);
-                    int units = Math.min(haveGroups, maxUnits);
-                    if (units <= 0) {
-                        p.sendMessage(ChatColor.YELLOW + "Попит вичерпано.");
-                        return;
-                    }
-                    SellRotationManager.SellResult res = sellManager.transactSell(mat, units);
-                    if (!res.success || res.units <= 0 || res.payout <= 0.0) {
-                        p.sendMessage(ChatColor.RED + "Продаж не вдався.");
-                        return;
-                    }
-                    // Remove sold groups from inventory
-                    removeFromInventory(p, mat, res.units * groupSize);
-                    // Pay out
-                    if (!economy.deposit(p, res.payout)) {
-                        p.sendMessage(ChatColor.RED + "Транзакція не вдалася.");
-                        return;
-                    }
-                    p.sendMessage(ChatColor.GREEN + "Продано " + ChatColor.YELLOW + mat.name() + ChatColor.GREEN + " " + (res.units * groupSize) + " шт. (" + res.units + " груп по " + groupSize + ") за " + ChatColor.GOLD + String.format(Locale.ROOT, "%.2f", res.payout));
-                    p.playSound(p.getLocation(), Sound.ENTITY_VILLAGER_YES, 1f, 1.1f);
-                    Bukkit.getScheduler().runTask(plugin, () -> fillSellOffers(topInv));
+            Material mat = holder.sellSlots[slot];
+            if (mat != null) {
+                if (!economy.isEnabled()) {
+                    p.sendMessage(ChatColor.RED + "Економіка недоступна. Встановіть Vault.");
                     return;
                 }
+                // Count in inventory and compute possible groups
+                int haveItems = countInInventory(p, mat);
+                if (haveItems <= 0) {
+                    p.sendMessage(ChatColor.YELLOW + "У вас немає цього предмета в інвентарі.");
+                    return;
+                }
+                SellRotationManager.Offer offer = sellManager.getOffer(mat);
+                if (offer == null || offer.disabled || offer.currentPrice <= 0.0) {
+                    p.sendMessage(ChatColor.RED + "Цей товар більше не купується.");
+                    refreshSellContent();
+                    return;
+                }
+                int groupSize = Math.max(1, offer.groupSize);
+                int haveGroups = haveItems / groupSize;
+                int maxUnits = sellManager.maxSellableUnits(offer);
+                int units = Math.min(haveGroups, maxUnits);
+                if (units <= 0) {
+                    p.sendMessage(ChatColor.YELLOW + "Попит вичерпано.");
+                    return;
+                }
+                SellRotationManager.SellResult res = sellManager.transactSell(mat, units);
+                if (!res.success || res.units <= 0 || res.payout <= 0.0) {
+                    p.sendMessage(ChatColor.RED + "Продаж не вдався.");
+                    return;
+                }
+                // Remove sold groups from inventory
+                removeFromInventory(p, mat, res.units * groupSize);
+                // Pay out
+                if (!economy.deposit(p, res.payout)) {
+                    p.sendMessage(ChatColor.RED + "Транзакція не вдалася.");
+                    return;
+                }
+                p.sendMessage(ChatColor.GREEN + "Продано " + ChatColor.YELLOW + mat.name() + ChatColor.GREEN + " " + (res.units * groupSize) + " шт. (" + res.units + " груп по " + groupSize + ") за " + ChatColor.GOLD + String.format(Locale.ROOT, "%.2f", res.payout));
+                p.playSound(p.getLocation(), Sound.ENTITY_VILLAGER_YES, 1f, 1.1f);
+                refreshSellContent();
+                return;
             }
             return;
         }
         
         if (holder.tab == Tab.QUESTS) {
-            int[] slots = contentSlots();
-            for (int s : slots) {
-                if (slot == s) {
-                    String qid = holder.questSlots.get(s);
-                    if (qid == null) return;
-                    // Try claim first if ready
-                    if (!questManager.isClaimed(p.getUniqueId(), qid)) {
-                        if (questManager.isCompleted(p.getUniqueId(), qid)) {
-                            int res = questManager.claim(p, qid);
-                            if (res != 0) Bukkit.getScheduler().runTask(plugin, () -> fillQuests(topInv, p));
-                            return;
-                        }
+            String qid = holder.questSlots[slot];
+            if (qid != null) {
+                // Try claim first if ready
+                if (!questManager.isClaimed(p.getUniqueId(), qid)) {
+                    if (questManager.isCompleted(p.getUniqueId(), qid)) {
+                        int res = questManager.claim(p, qid);
+                        if (res != 0) refreshQuestsFor(p);
+                        return;
                     }
-                    // If fetch and not completed/claimed, attempt delivery and auto-claim on success
-                    QuestDef def = questManager.get(qid);
-                    if (def != null && def.getKind() == QuestDef.Kind.FETCH && !questManager.isClaimed(p.getUniqueId(), qid)) {
-                        boolean ok = questManager.deliverFetch(p, qid);
-                        if (ok) {
-                            int res = questManager.claim(p, qid);
-                            Bukkit.getScheduler().runTask(plugin, () -> fillQuests(topInv, p));
-                            return;
-                        }
+                }
+                // If fetch and not completed/claimed, attempt delivery and auto-claim on success
+                QuestDef def = questManager.get(qid);
+                if (def != null && def.getKind() == QuestDef.Kind.FETCH && !questManager.isClaimed(p.getUniqueId(), qid)) {
+                    boolean ok = questManager.deliverFetch(p, qid);
+                    if (ok) {
+                        int res = questManager.claim(p, qid);
+                        refreshQuestsFor(p);
+                        return;
                     }
-                    // Otherwise show progress info
-                    int prog = questManager.getProgress(p.getUniqueId(), qid);
-                    int req = def != null ? def.getRequired() : 0;
-                    p.sendMessage(ChatColor.YELLOW + "Прогрес: " + prog + "/" + req);
-                    return;
                 }
+                // Otherwise show progress info
+                int prog = questManager.getProgress(p.getUniqueId(), qid);
+                int req = def != null ? def.getRequired() : 0;
+                p.sendMessage(ChatColor.YELLOW + "Прогрес: " + prog + "/" + req);
+                return;
             }
             return;
         }
@@ -905,8 +1134,11 @@ public class TraderGUI {
     }
 
     private ItemStack toDisplayItem(ShopItem si, String luckyTier, double price, ItemStack base) {
-        // Lucky Blocks now use block icons; normal rotating items use their actual material
-        ItemStack it = luckyTier != null ? new ItemStack(materialForLuckyTier(luckyTier)) : base.clone();
+        // Lucky Blocks use block icons (or cached textured heads); normal rotating items use their actual material
+        ItemStack it;
+        if (luckyTier == null) it = base.clone();
+        else if (luckyUseHeads) it = luckyHeads.get(luckyTier);
+        else it = new ItemStack(materialForLuckyTier(luckyTier));
         ItemMeta meta = it.getItemMeta();
         String tierName = luckyTier != null ? luckyDisplayName(luckyTier) : si.getTier().display();
         ChatColor tierColor = luckyTier != null ? luckyColor(luckyTier) : si.getTier().color();
@@ -982,144 +1214,74 @@ public class TraderGUI {
         }
     }
 
-    // --- Lucky Block custom heads ---
-    // COMMON
-    private static final String LUCKY_TEX_COMMON = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvZGIxODdlNDE1NjQwZGEwNTcyNjBkMTMwMDk5ODBjMDcyOTRmYzJkNzI0MGNlYzZmOWUzOTA3OTZjYmIxOTQ4NCJ9fX0=";
-    // GOLD (alias: RARE)
-    private static final String LUCKY_TEX_RARE = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvZmRiODhmMjZjN2ZjYTQ1MGE1NGI2OTM5YjZmNzRkMzI0Yzg0ZWYyMTM4OTY3MDQ2ZTA5Y2U5OTZiNGE0ODkyMyJ9fX0=";
-    // EPIC
-    private static final String LUCKY_TEX_EPIC = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvMzcyNWRhODJhYTBhZGU1ZDUyYmQyMDI0ZjRiYzFkMDE5ZmMwMzBlOWVjNWUwZWMxNThjN2Y5YTZhYTBjNDNiYSJ9fX0=";
-
-    private ItemStack luckyHead(String tier) {
-        String b64 = switch (tier.toLowerCase(Locale.ROOT)) {
-            case "common" -> LUCKY_TEX_COMMON;
-            case "rare", "gold" -> LUCKY_TEX_RARE;
-            case "epic" -> LUCKY_TEX_EPIC;
-            default -> LUCKY_TEX_COMMON;
-        };
-
-        // 1) Try direct GameProfile injection first (no network, most reliable across Spigot/Paper)
-        try {
-            Class<?> gameProfileClass = Class.forName("com.mojang.authlib.GameProfile");
-            Class<?> propertyClass = Class.forName("com.mojang.authlib.properties.Property");
-            Object gp = gameProfileClass.getConstructor(UUID.class, String.class).newInstance(UUID.randomUUID(), null);
-            Object props = gameProfileClass.getMethod("getProperties").invoke(gp);
-            Object prop = propertyClass.getConstructor(String.class, String.class).newInstance("textures", b64);
-            Method put = props.getClass().getMethod("put", String.class, propertyClass);
-            put.invoke(props, "textures", prop);
-
-            ItemStack head = new ItemStack(Material.PLAYER_HEAD);
-            SkullMeta sm = (SkullMeta) head.getItemMeta();
-            // Assign to any field named 'profile' or of GameProfile type
-            Field target = null;
-            for (Field f : sm.getClass().getDeclaredFields()) {
-                if (f.getName().equalsIgnoreCase("profile") || f.getType().getName().endsWith("GameProfile")) {
-                    target = f; break;
-                }
-            }
-            if (target != null) {
-                target.setAccessible(true);
-                target.set(sm, gp);
-                head.setItemMeta(sm);
-                return head;
-            }
-        } catch (Throwable ignored) {
-            // Continue to PlayerProfile path
+    private static class GUIHolder implements InventoryHolder {
+        private Tab tab; // changes on in-place tab switches
+        // Click actions by raw slot, filled when the tab renders; only the current tab's array is populated
+        private final Entry[] entries = new Entry[54];       // SHOP: purchase behind each slot
+        private final String[] questSlots = new String[54];  // QUESTS: quest id
+        private final Material[] sellSlots = new Material[54]; // SELL: offer material
+        private Category category; // CATALOG tab only
+        private String query;       // CATALOG tab showing search/filter results; used as the title
+        private ItemStack[][] pages; // per-view pages for search results; null = shared category pages
+        private int page;
+        private final String traderId; // trader whose drop this view shows (and returns to)
+        private ShopPage personalPage;  // SHOP tab of a personal-mode trader: this viewer's own page
+        private final ItemStack[] shown = new ItemStack[54]; // last stack sent per slot, see put()
+        private GUIHolder(Tab tab, String traderId) { this.tab = tab; this.traderId = traderId; }
+        public Tab tab() { return tab; }
+        private void clearActions() {
+            Arrays.fill(entries, null);
+            Arrays.fill(questSlots, null);
+            Arrays.fill(sellSlots, null);
         }
+        @Override public Inventory getInventory() { return Bukkit.createInventory(null, 9); }
+    }
 
-        // 2) Fallback: Paper PlayerProfile; try direct textures property first, then URL
-        try {
-            Object profile = null;
-            try {
-                Method m = Bukkit.class.getMethod("createProfile", UUID.class, String.class);
-                profile = m.invoke(null, UUID.randomUUID(), null);
-            } catch (NoSuchMethodException ignored) {
-                try {
-                    Method m = Bukkit.class.getMethod("createProfile", UUID.class);
-                    profile = m.invoke(null, UUID.randomUUID());
-                } catch (NoSuchMethodException ignored2) {}
-            }
-            if (profile != null) {
-                // Try adding a ProfileProperty("textures", b64) if available
-                try {
-                    Object props = profile.getClass().getMethod("getProperties").invoke(profile);
-                    // Try org.bukkit.profile.ProfileProperty first
-                    Class<?> propCls = null;
-                    try { propCls = Class.forName("org.bukkit.profile.ProfileProperty"); } catch (Throwable t) {}
-                    if (propCls == null) {
-                        try { propCls = Class.forName("com.destroystokyo.paper.profile.ProfileProperty"); } catch (Throwable t) {}
-                    }
-                    if (propCls != null) {
-                        Object propObj;
-                        try {
-                            propObj = propCls.getConstructor(String.class, String.class).newInstance("textures", b64);
-                        } catch (NoSuchMethodException e) {
-                            // Some variants need (name, value, signature)
-                            propObj = propCls.getConstructor(String.class, String.class, String.class).newInstance("textures", b64, null);
-                        }
-                        // props is a collection-like type with add
-                        Method add = props.getClass().getMethod("add", Object.class);
-                        add.invoke(props, propObj);
-                    }
-                } catch (Throwable ignoredProps) {
-                    // Fall back to URL setSkin
-                    try {
-                        String url = extractSkinUrl(b64);
-                        if (url != null) {
-                            Object textures = profile.getClass().getMethod("getTextures").invoke(profile);
-                            textures.getClass().getMethod("setSkin", URL.class).invoke(textures, new URL(url));
-                            try { profile.getClass().getMethod("setTextures", textures.getClass()).invoke(profile, textures); } catch (NoSuchMethodException ignored) {}
-                        }
-                    } catch (Throwable ignored2) {}
-                }
+    // "00".."99", so clock strings are concatenated instead of String.format-ed every second
+    private static final String[] TWO_DIGITS = new String[100];
+    static {
+        for (int i = 0; i < TWO_DIGITS.length; i++) TWO_DIGITS[i] = (i < 10 ? "0" : "") + i;
+    }
 
-                ItemStack head = new ItemStack(Material.PLAYER_HEAD);
-                SkullMeta sm = (SkullMeta) head.getItemMeta();
-                boolean assigned = false;
-                for (Method m : sm.getClass().getMethods()) {
-                    if ((m.getName().equals("setPlayerProfile") || m.getName().equals("setOwnerProfile"))
-                            && m.getParameterCount() == 1
-                            && m.getParameterTypes()[0].getSimpleName().contains("PlayerProfile")) {
-                        m.invoke(sm, profile);
-                        assigned = true;
-                        break;
-                    }
-                }
-                if (assigned) {
-                    head.setItemMeta(sm);
-                    return head;
-                }
-            }
-        } catch (Throwable ignored) {
-            // Give up; return a generic player head so it's not a sponge
-        }
+    private static String twoDigits(long v) {
+        return v < TWO_DIGITS.length ? TWO_DIGITS[(int) v] : Long.toString(v);
+    }
 
-        return new ItemStack(Material.PLAYER_HEAD);
+    private static String clockHms(long secs) {
+        return twoDigits(secs / 3600) + ":" + TWO_DIGITS[(int) ((secs % 3600) / 60)] + ":" + TWO_DIGITS[(int) (secs % 60)];
     }
 
-    private String extractSkinUrl(String base64) {
-        try {
-            String json = new String(Base64.getDecoder().decode(base64));
-            String marker = "\"url\":\"";
-            int idx = json.indexOf(marker);
-            if (idx == -1) return null;
-            int start = idx + marker.length();
-            int end = json.indexOf('"', start);
-            if (end == -1) return null;
-            return json.substring(start, end);
-        } catch (IllegalArgumentException e) {
-            return null;
+    // Countdown item shared by every viewer; rebuilt only when the displayed second changes.
+    // Sharing is safe because Inventory.setItem stores a copy.
+    private static final class CachedTimer {
+        private long secs = -1L;
+        private ItemStack item;
+        ItemStack get(long secs, java.util.function.LongFunction<ItemStack> build) {
+            if (item == null || secs != this.secs) {
+                item = build.apply(secs);
+                this.secs = secs;
+            }
+            return item;
         }
     }
 
-    private static class GUIHolder implements InventoryHolder {
-        private final Tab tab;
-        private final Map<Integer, Entry> entries = new HashMap<>();
-        private final Map<Integer, String> questSlots = new HashMap<>();
-        private final Map<Integer, Material> sellSlots = new HashMap<>();
-        private GUIHolder(Tab tab) { this.tab = tab; }
-        public Tab tab() { return tab; }
-        @Override public Inventory getInventory() { return Bukkit.createInventory(null, 9); }
+    // Diff update: only send slots whose content changed since this view last rendered them.
+    // Shared page and timer stacks hit the reference check; freshly built ones fall back to isSimilar + amount.
+    private static void put(Inventory inv, int slot, ItemStack item) {
+        ItemStack[] shown = ((GUIHolder) inv.getHolder()).shown;
+        ItemStack prev = shown[slot];
+        if (prev == item) return;
+        if (prev != null && item != null && prev.getAmount() == item.getAmount() && prev.isSimilar(item)) return;
+        shown[slot] = item;
+        inv.setItem(slot, item);
+    }
+
+    private static final class Session {
+        final Player player;
+        final Inventory top;
+        final GUIHolder holder;
+        boolean dirty; // queued in dirtySessions
+        Session(Player player, Inventory top, GUIHolder holder) { this.player = player; this.top = top; this.holder = holder; }
     }
 
     private static class Entry {
@@ -1127,14 +1289,32 @@ public class TraderGUI {
         final String luckyTier; // null if normal item
         final double price;
         final ItemStack give; // null for lucky blocks (command-based)
-        Entry(ShopItem item, String luckyTier, double price, ItemStack give) { this.item = item; this.luckyTier = luckyTier; this.price = price; this.give = give; }
+        final PreparedDrop drop; // rotating items: the drop and slot they came from, for rotation history
+        final int dropIndex;
+        Entry(ShopItem item, String luckyTier, double price, ItemStack give) { this(item, luckyTier, price, give, null, -1); }
+        Entry(ShopItem item, String luckyTier, double price, ItemStack give, PreparedDrop drop, int dropIndex) {
+            this.item = item; this.luckyTier = luckyTier; this.price = price; this.give = give; this.drop = drop; this.dropIndex = dropIndex;
+        }
+    }
+
+    // One rendered Shop tab: display stacks by slot plus the entry (and so the price) behind each slot
+    private static final class ShopPage {
+        final PreparedDrop drop;
+        final long priceVersion;
+        final long builtAt = System.currentTimeMillis();
+        final ItemStack[] items = new ItemStack[54];
+        final Entry[] entries = new Entry[54];
+        ShopPage(PreparedDrop drop, long priceVersion) { this.drop = drop; this.priceVersion = priceVersion; }
+    }
+
+    private ItemStack timerItem(TraderRotation rotation) {
+        long secs = rotation != null ? rotation.getSecondsRemaining() : 0L;
+        String key = rotation != null ? rotation.traderId() : DropManager.DEFAULT_TRADER;
+        return shopTimers.computeIfAbsent(key, k -> new CachedTimer()).get(secs, this::buildShopTimerItem);
     }
 
-    private ItemStack timerItem() {
-        long secs = dropManager.getSecondsRemaining();
-        long m = secs / 60;
-        long s = secs % 60;
-        String t = String.format("%02d:%02d", m, s);
+    private ItemStack buildShopTimerItem(long secs) {
+        String t = twoDigits(secs / 60) + ":" + TWO_DIGITS[(int) (secs % 60)];
         ItemStack it = new ItemStack(Material.CLOCK);
         ItemMeta meta = it.getItemMeta();
         meta.setDisplayName(ChatColor.AQUA + "Наступна ротація через: " + ChatColor.YELLOW + t);
@@ -1143,110 +1323,6 @@ public class TraderGUI {
         return it;
     }
 
-    private boolean isArmor(Material m) {
-        String n = m.name();
-        return n.endsWith("_HELMET") || n.endsWith("_CHESTPLATE") || n.endsWith("_LEGGINGS") || n.endsWith("_BOOTS") || n.equals("ELYTRA");
-    }
-
-    private boolean isWeapon(Material m) {
-        String n = m.name();
-        return n.endsWith("_SWORD") || n.endsWith("_AXE") || n.equals("BOW") || n.equals("CROSSBOW") || n.equals("TRIDENT") || n.equals("SHIELD");
-    }
-
-    private boolean isShulkerBox(Material m) {
-        String n = m.name();
-        return n.endsWith("_SHULKER_BOX");
-    }
-
-    private String groupKeyFor(Material m) {
-        String n = m.name();
-        if (n.endsWith("_SWORD")) return "SWORD";
-        if (n.endsWith("_AXE")) return "AXE";
-        if (n.equals("BOW")) return "BOW";
-        if (n.equals("CROSSBOW")) return "CROSSBOW";
-        if (n.equals("TRIDENT")) return "TRIDENT";
-        if (n.equals("SHIELD")) return "SHIELD";
-        if (isShulkerBox(m)) return "SHULKER_BOX";
-        return null; // other items may repeat
-    }
-
-    // Apply random enchantments appropriate for the item and return a quality score
-    private double applyRandomEnchants(ItemStack it) {
-        Material m = it.getType();
-        List<Enchantment> pool = new ArrayList<>();
-        Map<Enchantment, Integer> max = new HashMap<>();
-
-        String n = m.name();
-        if (n.endsWith("_SWORD")) {
-            add(pool, max, Enchantment.SHARPNESS, 5);
-            add(pool, max, Enchantment.SMITE, 5);
-            add(pool, max, Enchantment.BANE_OF_ARTHROPODS, 5);
-            add(pool, max, Enchantment.LOOTING, 3);
-            add(pool, max, Enchantment.SWEEPING_EDGE, 3);
-            add(pool, max, Enchantment.FIRE_ASPECT, 2);
-            add(pool, max, Enchantment.KNOCKBACK, 2);
-            add(pool, max, Enchantment.UNBREAKING, 3);
-            add(pool, max, Enchantment.MENDING, 1);
-        } else if (n.endsWith("_AXE")) {
-            add(pool, max, Enchantment.EFFICIENCY, 5);
-            add(pool, max, Enchantment.FORTUNE, 3);
-            add(pool, max, Enchantment.SILK_TOUCH, 1);
-            add(pool, max, Enchantment.SHARPNESS, 5);
-            add(pool, max, Enchantment.UNBREAKING, 3);
-            add(pool, max, Enchantment.MENDING, 1);
-        } else if (n.equals("BOW")) {
-            add(pool, max, Enchantment.POWER, 5);
-            add(pool, max, Enchantment.PUNCH, 2);
-            add(pool, max, Enchantment.FLAME, 1);
-            add(pool, max, Enchantment.INFINITY, 1);
-            add(pool, max, Enchantment.UNBREAKING, 3);
-            add(pool, max, Enchantment.MENDING, 1);
-        } else if (n.equals("CROSSBOW")) {
-            add(pool, max, Enchantment.QUICK_CHARGE, 3);
-            add(pool, max, Enchantment.MULTISHOT, 1);
-            add(pool, max, Enchantment.PIERCING, 4);
-            add(pool, max, Enchantment.UNBREAKING, 3);
-            add(pool, max, Enchantment.MENDING, 1);
-        } else if (n.equals("TRIDENT")) {
-            add(pool, max, Enchantment.IMPALING, 5);
-            add(pool, max, Enchantment.LOYALTY, 3);
-            add(pool, max, Enchantment.RIPTIDE, 3);
-            add(pool, max, Enchantment.CHANNELING, 1);
-            add(pool, max, Enchantment.UNBREAKING, 3);
-            add(pool, max, Enchantment.MENDING, 1);
-        } else if (isArmor(m)) {
-            add(pool, max, Enchantment.PROTECTION, 4);
-            add(pool, max, Enchantment.BLAST_PROTECTION, 4);
-            add(pool, max, Enchantment.FIRE_PROTECTION, 4);
-            add(pool, max, Enchantment.PROJECTILE_PROTECTION, 4);
-            add(pool, max, Enchantment.THORNS, 3);
-            add(pool, max, Enchantment.UNBREAKING, 3);
-            add(pool, max, Enchantment.MENDING, 1);
-            add(pool, max, Enchantment.FEATHER_FALLING, 4);
-            add(pool, max, Enchantment.RESPIRATION, 3);
-            add(pool, max, Enchantment.AQUA_AFFINITY, 1);
-        }
-
-        if (pool.isEmpty()) return 0.0;
-        Collections.shuffle(pool);
-        int maxCount = Math.min(3, pool.size());
-        int count = 1 + new Random().nextInt(maxCount); // 1..maxCount
-        double quality = 0.0;
-        for (int i = 0; i < count; i++) {
-            Enchantment e = pool.get(i);
-            int ml = max.getOrDefault(e, 1);
-            int lvl = 1 + new Random().nextInt(ml);
-            try { it.addUnsafeEnchantment(e, lvl); } catch (Throwable ignore) {}
-            quality += (double) lvl / (double) ml;
-        }
-        return quality; // higher = better
-    }
-
-    private void add(List<Enchantment> pool, Map<Enchantment, Integer> max, Enchantment e, int maxLevel) {
-        pool.add(e);
-        max.put(e, maxLevel);
-    }
-
     private void addArmorEnchants(ItemStack it) {
         it.addUnsafeEnchantment(Enchantment.PROTECTION, 4);
         it.addUnsafeEnchantment(Enchantment.UNBREAKING, 3);
@@ -1269,13 +1345,9 @@ public class TraderGUI {
     }
 
     public void refreshTimers() {
-        // Update the timer item (slot 4) for any player currently viewing the Shop tab
-        for (org.bukkit.entity.Player p : Bukkit.getOnlinePlayers()) {
-            Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-            if (top == null) continue;
-            if (!(top.getHolder() instanceof GUIHolder holder)) continue;
-            if (holder.tab != Tab.SHOP) continue;
-            top.setItem(0, timerItem());
+        // Update the timer item (slot 0) for any player currently viewing the Shop tab
+        for (Session s : viewers(Tab.SHOP)) {
+            put(s.top, 0, timerItem(dropManager.rotationFor(s.holder.traderId)));
         }
     }
 
@@ -1299,11 +1371,13 @@ public class TraderGUI {
         if (System.currentTimeMillis() % 60000L < 50L) {
             refreshSellContent();
         }
-        int ci = dropManager.getCycleIndex();
-        if (ci != lastCycleIndex) {
-            lastCycleIndex = ci;
-            refreshShopContent();
+        boolean cycled = false;
+        for (TraderRotation r : dropManager.rotations()) {
+            Integer prev = lastCycleIndex.put(r.traderId(), r.getCycleIndex());
+            if (prev == null || prev != r.getCycleIndex()) cycled = true;
         }
+        // Aged pages are re-rendered too, so shown and charged prices follow the lazy price decay
+        if (cycled || shopPagesStale()) refreshShopContent();
         // Player heads: keep balances fresh (rate-limited to once every 5 seconds)
         headRefreshCounter = (headRefreshCounter + 1) % 5;
         if (headRefreshCounter == 0) {
@@ -1311,35 +1385,59 @@ public class TraderGUI {
         }
     }
 
+    /** Drops the per-trader page, timer and cycle caches of a removed trader. */
+    public void forgetTrader(String traderId) {
+        shopPages.remove(traderId);
+        shopTimers.remove(traderId);
+        lastCycleIndex.remove(traderId);
+    }
+
     private void refreshShopContent() {
-        for (org.bukkit.entity.Player p : Bukkit.getOnlinePlayers()) {
-            Inventory top = p.getOpenInventory() != null ? p.getOpenInventory().getTopInventory() : null;
-            if (top == null) continue;
-            if (!(top.getHolder() instanceof GUIHolder holder)) continue;
-            if (holder.tab != Tab.SHOP) continue;
-
-            // Clear current mappings and items in content area
-            holder.entries.clear();
-            for (int s : contentSlots()) top.setItem(s, null);
-
-            List<Entry> lucky = buildLuckyEntries();
-            List<Entry> rotating = buildRotatingEntries();
-
-            int[] row0 = new int[]{19,20,21,22,23,24,25};
-            int[] row1 = new int[]{28,29,30,31,32,33,34};
-            int[] row2 = new int[]{37,38,39,40,41,42,43};
-
-            // Place lucky row centered
-            placeCenteredRow(top, holder, row0, lucky);
-
-            // Place rotating rows centered per row
-            int firstRowCount = Math.min(rotating.size(), row1.length);
-            placeCenteredRow(top, holder, row1, rotating.subList(0, firstRowCount));
-            int remaining = rotating.size() - firstRowCount;
-            if (remaining > 0) {
-                int secondRowCount = Math.min(remaining, row2.length);
-                placeCenteredRow(top, holder, row2, rotating.subList(firstRowCount, firstRowCount + secondRowCount));
+        invalidate(Tab.SHOP);
+    }
+
+    // --- Coalesced refreshes ---
+    // Content changes only mark sessions dirty; however many invalidations land in one tick, each session is
+    // re-rendered at most once, on the next tick. Large batches are spread over ticks by refreshBudgetNanos.
+
+    private void invalidate(Tab tab) {
+        for (Session s : sessionsByTab.get(tab).values()) invalidate(s);
+    }
+
+    private void invalidate(Session s) {
+        if (!s.dirty) {
+            s.dirty = true;
+            dirtySessions.add(s);
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::flushRefreshes);
+        }
+    }
+
+    private void flushRefreshes() {
+        flushScheduled = false;
+        long deadline = System.nanoTime() + refreshBudgetNanos;
+        Session s;
+        while ((s = dirtySessions.poll()) != null) {
+            s.dirty = false;
+            // Closed or replaced views are skipped; the session registry is the source of truth
+            if (sessions.get(s.player.getUniqueId()) == s) renderContent(s);
+            if (!dirtySessions.isEmpty() && System.nanoTime() >= deadline) {
+                // Out of budget: continue next tick (at least one session is rendered per tick)
+                flushScheduled = true;
+                Bukkit.getScheduler().runTask(plugin, this::flushRefreshes);
+                return;
             }
         }
     }
+
+    private void renderContent(Session s) {
+        switch (s.holder.tab) {
+            case SHOP -> placeShopPage(s.top, s.holder, s.player);
+            case SELL -> fillSellOffers(s.top);
+            case QUESTS -> fillQuests(s.top, s.player);
+            default -> { } // catalog pages only change on navigation
+        }
+    }
 }
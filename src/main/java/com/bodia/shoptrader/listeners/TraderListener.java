@@ -10,7 +10,9 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.PrepareAnvilEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.entity.EntityPotionEffectEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
@@ -29,15 +31,22 @@ public class TraderListener implements Listener {
     @EventHandler
     public void onInteract(PlayerInteractEntityEvent e) {
         Entity clicked = e.getRightClicked();
-        if (clicked instanceof WanderingTrader && manager.isOurTrader(clicked)) {
+        if (!(clicked instanceof WanderingTrader)) return;
+        String traderId = manager.traderIdOf(clicked);
+        if (traderId != null) {
             e.setCancelled(true);
             Player p = e.getPlayer();
-            gui.open(p, TraderGUI.Tab.SHOP);
+            // Bind the GUI to the trader that was clicked so it shows that trader's drop
+            gui.open(p, traderId, TraderGUI.Tab.SHOP);
         }
     }
 
     @EventHandler
     public void onInventoryClick(InventoryClickEvent e) {
+        if (gui.isSearchView(e.getView())) {
+            gui.handleSearchClick(e);
+            return;
+        }
         if (gui.isOurInventory(e.getView().getTopInventory())) {
             gui.handleClick(e);
         }
@@ -45,18 +54,39 @@ public class TraderListener implements Listener {
 
     @EventHandler
     public void onInventoryDrag(InventoryDragEvent e) {
+        if (gui.isSearchView(e.getView())) {
+            // The search anvil only takes typed text; never let player items into its slots
+            e.setCancelled(true);
+            return;
+        }
         if (gui.isOurInventory(e.getView().getTopInventory())) {
             gui.handleDrag(e);
         }
     }
 
+    @EventHandler
+    public void onPrepareAnvil(PrepareAnvilEvent e) {
+        if (gui.isSearchView(e.getView())) {
+            gui.handlePrepareSearch(e);
+        }
+    }
+
     @EventHandler
     public void onInventoryClose(InventoryCloseEvent e) {
+        if (gui.isSearchView(e.getView())) {
+            gui.onSearchClose(e);
+            return;
+        }
         if (gui.isOurInventory(e.getView().getTopInventory())) {
             gui.onClose(e);
         }
     }
 
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        gui.onQuit(e.getPlayer());
+    }
+
     @EventHandler
     public void onPotionEffect(EntityPotionEffectEvent e) {
         Entity entity = e.getEntity();
@@ -3,282 +3,319 @@ package com.bodia.shoptrader.shop;
 import com.bodia.shoptrader.model.Category;
 import com.bodia.shoptrader.model.ShopItem;
 import com.bodia.shoptrader.model.Tier;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.Tag;
 import org.bukkit.plugin.Plugin;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class Catalog {
 
     private final Plugin plugin;
-    private final Map<Tier, Double> tierPrices = new EnumMap<>(Tier.class);
-    private final Map<Category, List<Material>> categoryMaterials = new EnumMap<>(Category.class);
-    private final Map<Tier, List<Material>> tierMaterials = new EnumMap<>(Tier.class);
-    private final Map<String, Double> yieldFactors = new HashMap<>(); // per-material name -> factor
-    private double garbagePrice = 2.0; // configurable price for garbage category
-    // Dynamic pricing state
-    private final Map<Material, Integer> buysSinceAdjust = new EnumMap<>(Material.class);
-    private final Map<Material, Double> shopMultipliers = new EnumMap<>(Material.class); // affects what player pays
-    private final Map<Material, Double> sellMultipliers = new EnumMap<>(Material.class); // affects what shop pays player
-
-    // Dynamic pricing parameters (loaded from config with sane defaults)
-    private int shopIncreaseEveryNBuys;
-    private double shopIncreaseFactor;     // multiplicative, e.g., 0.10 => x1.10
-    private double maxShopMultiplier;
-    private double sellDecreasePerItem;    // per unit sold, e.g., 0.005 => -0.5% each
-    private double minSellMultiplier;
-    private double shopDecreasePerItemOnSell; // per unit sold, reduces shop (buy) multiplier
-    private double minShopMultiplier;         // floor for shop (buy) multiplier
+    // Immutable catalog state; replaced wholesale on reload so readers always see a consistent view
+    private volatile CatalogSnapshot snapshot;
+    // Dynamic pricing state (lock-free, safe to read from async tasks)
+    private final PricingState pricing = new PricingState(MaterialTable.MATERIALS.length);
+    private PriceJournal journal; // null when persistence is disabled
+    // Bumped on every reload, purchase and sale; lets renderers cache priced items until it moves
+    private final AtomicLong priceVersion = new AtomicLong();
 
     public Catalog(Plugin plugin) {
         this.plugin = plugin;
-        loadPrices();
-        loadYieldFactors();
-        loadDynamicParams();
-        buildCategoryMaterials();
-        buildTierClassification();
+        publish(CatalogSnapshot.build(CatalogSnapshot.Settings.read(plugin.getConfig())));
+        startJournal();
     }
 
-    private void loadPrices() {
-        tierPrices.put(Tier.COMMON, plugin.getConfig().getDouble("prices.common", 100.0));
-        tierPrices.put(Tier.UNCOMMON, plugin.getConfig().getDouble("prices.uncommon", 300.0));
-        tierPrices.put(Tier.EPIC, plugin.getConfig().getDouble("prices.epic", 1000.0));
-        tierPrices.put(Tier.LEGENDARY, plugin.getConfig().getDouble("prices.legendary", 5000.0));
-        this.garbagePrice = plugin.getConfig().getDouble("prices.garbage", 2.0);
+    private void startJournal() {
+        var cfg = plugin.getConfig();
+        if (!cfg.getBoolean("pricing.journal.enabled", true)) return;
+        this.journal = new PriceJournal(plugin.getLogger(), plugin.getDataFolder(), pricing,
+                cfg.getLong("pricing.journal.fsync_interval_ms", 1000L),
+                cfg.getInt("pricing.journal.compact_every_records", 20000),
+                cfg.getLong("pricing.journal.snapshot_minutes", 10L) * 60_000L,
+                cfg.getInt("pricing.journal.queue_capacity", 4096));
+        journal.start();
     }
 
-    private void loadYieldFactors() {
-        yieldFactors.clear();
-        // pricing.yield.by_material: map of MATERIAL_NAME -> double factor
-        if (plugin.getConfig().isConfigurationSection("pricing.yield.by_material")) {
-            var sec = plugin.getConfig().getConfigurationSection("pricing.yield.by_material");
-            for (String key : sec.getKeys(false)) {
-                double f = sec.getDouble(key, 1.0);
-                yieldFactors.put(key.toUpperCase(Locale.ROOT), f);
-            }
+    // Flush and close the price journal; call on plugin disable
+    public void shutdown() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
         }
     }
 
     public void reload() {
-        loadPrices();
-        loadYieldFactors();
-        loadDynamicParams();
-        buildCategoryMaterials();
-        buildTierClassification();
+        publish(CatalogSnapshot.build(CatalogSnapshot.Settings.read(plugin.getConfig())));
     }
 
-    private void buildCategoryMaterials() {
-        categoryMaterials.clear();
-        categoryMaterials.put(Category.ARMORS, new ArrayList<>());
-        categoryMaterials.put(Category.TOOLS_WEAPONS, new ArrayList<>());
-        categoryMaterials.put(Category.BLOCKS, new ArrayList<>());
-        categoryMaterials.put(Category.SPAWN_EGGS, new ArrayList<>());
-        categoryMaterials.put(Category.LUCKY_BLOCKS, new ArrayList<>());
-        categoryMaterials.put(Category.GARBAGE, new ArrayList<>());
-
-        for (Material m : Material.values()) {
-            if (!m.isItem()) continue;
-            String name = m.name();
-            if (name.endsWith("SPAWN_EGG")) {
-                categoryMaterials.get(Category.SPAWN_EGGS).add(m);
-                continue;
-            }
-            if (!isUseful(m)) continue;
-            if (name.endsWith("_HELMET") || name.endsWith("_CHESTPLATE") || name.endsWith("_LEGGINGS") || name.endsWith("_BOOTS") || name.equals("ELYTRA")) {
-                categoryMaterials.get(Category.ARMORS).add(m);
-            } else if (name.endsWith("_SWORD") || name.endsWith("_AXE") || name.endsWith("_PICKAXE") || name.endsWith("_SHOVEL") || name.endsWith("_HOE") || name.equals("BOW") || name.equals("CROSSBOW") || name.equals("TRIDENT") || name.equals("SHIELD")) {
-                categoryMaterials.get(Category.TOOLS_WEAPONS).add(m);
-            } else if (m.isBlock()) {
-                // Useful functional blocks only; non-useful filtered above
-                categoryMaterials.get(Category.BLOCKS).add(m);
-            }
-        }
-
-        // Lucky blocks: we'll represent as a custom item, not a vanilla material classification here.
-        categoryMaterials.get(Category.LUCKY_BLOCKS).add(Material.SPONGE);
+    /**
+     * Reads config on the calling (main) thread, rebuilds the catalog on an async thread and swaps it in
+     * on the main thread before running {@code then}. Readers keep using the previous snapshot meanwhile.
+     */
+    public void reloadAsync(Runnable then) {
+        CatalogSnapshot.Settings settings = CatalogSnapshot.Settings.read(plugin.getConfig());
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            CatalogSnapshot next = CatalogSnapshot.build(settings);
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                publish(next);
+                if (then != null) then.run();
+            });
+        });
     }
 
-    private void buildTierClassification() {
-        tierMaterials.clear();
-        for (Tier t : Tier.values()) tierMaterials.put(t, new ArrayList<>());
-
-        for (Material m : Material.values()) {
-            if (!m.isItem()) continue;
-            String name = m.name();
-            if (name.endsWith("SPAWN_EGG")) continue; // exclude spawn eggs from tiering
-            if (!isUseful(m)) continue; // exclude misc/garbage
+    private void publish(CatalogSnapshot next) {
+        pricing.setHalfLifeMillis(next.settings.halfLifeMillis);
+        this.snapshot = next;
+        priceVersion.incrementAndGet();
+    }
 
-            Tier t = tierFor(m);
-            tierMaterials.get(t).add(m);
-        }
+    public long priceVersion() {
+        return priceVersion.get();
     }
 
     public Tier tierFor(Material m) {
-        String n = m.name();
-        if (n.startsWith("NETHERITE") || n.contains("NETHERITE") || n.equals("ENCHANTED_GOLDEN_APPLE") || n.equals("ELYTRA") ) return Tier.LEGENDARY;
-        if (n.startsWith("DIAMOND") || n.contains("DIAMOND") || n.equals("TRIDENT") || n.contains("SHULKER") || n.equals("GOLDEN_APPLE") || n.contains("ENDER")) return Tier.EPIC;
-        if (n.startsWith("IRON") || n.startsWith("GOLDEN") || n.contains("GOLD") || n.equals("BOW") || n.equals("CROSSBOW") || n.equals("SHIELD")) return Tier.UNCOMMON;
-        if (n.startsWith("CHAINMAIL")) return Tier.UNCOMMON;
-        if (n.startsWith("WOODEN") || n.startsWith("LEATHER")) return Tier.COMMON;
-        // Blocks: classify some special
-        if (m == Material.NETHERITE_BLOCK || m == Material.BEACON || m == Material.ENCHANTING_TABLE || m == Material.BEDROCK || m == Material.BEACON || m ==  Material.ANCIENT_DEBRIS) return Tier.LEGENDARY;
-        if (m == Material.DIAMOND_BLOCK ) return Tier.EPIC;
-        if (m == Material.IRON_BLOCK || m == Material.ANVIL) return Tier.UNCOMMON;
-        return Tier.GARBAGE;
+        return snapshot.table.tier(m);
     }
 
     public double priceFor(Tier tier) {
-        return tierPrices.getOrDefault(tier, 100.0);
+        return snapshot.settings.tierPrices.getOrDefault(tier, 100.0);
     }
 
     public List<ShopItem> allItemsByCategory(Category cat) {
-        List<Material> list = categoryMaterials.getOrDefault(cat, Collections.emptyList());
-        return list.stream().map(this::toShopItem).collect(Collectors.toList());
+        CatalogSnapshot s = snapshot;
+        List<Material> list = s.categoryMaterials.getOrDefault(cat, Collections.emptyList());
+        return list.stream().map(m -> toShopItem(s.table, m)).collect(Collectors.toList());
+    }
+
+    public List<Material> materialsForCategory(Category cat) {
+        return snapshot.categoryMaterials.getOrDefault(cat, Collections.emptyList());
     }
 
     public List<Material> materialsForTier(Tier tier) {
-        return tierMaterials.getOrDefault(tier, Collections.emptyList());
+        return snapshot.tierMaterials.getOrDefault(tier, Collections.emptyList());
     }
 
-    public List<ShopItem> rollDrop(Map<Tier, Integer> counts, Random rng) {
-        List<ShopItem> result = new ArrayList<>();
+    // Same seed + same catalog => same drop, so a rotation can be regenerated instead of stored
+    public List<ShopItem> rollDrop(Map<Tier, Integer> counts, long seed) {
+        return rollDrop(counts, new SplittableRandom(seed));
+    }
+
+    public List<ShopItem> rollDrop(Map<Tier, Integer> counts, SplittableRandom rng) {
+        CatalogSnapshot s = snapshot;
+        int total = 0;
+        for (int c : counts.values()) total += Math.max(0, c);
+        List<Material> picks = new ArrayList<>(total);
         for (Map.Entry<Tier, Integer> e : counts.entrySet()) {
-            Tier tier = e.getKey();
-            int count = e.getValue();
-            List<Material> pool = new ArrayList<>(materialsForTier(tier));
-            // remove spawn eggs (already excluded) and avoid too large pools
-            Collections.shuffle(pool, rng);
-            for (int i = 0; i < count && i < pool.size(); i++) {
-                Material m = pool.get(i);
-                Category cat = categorize(m);
-                double price = unitShopPrice(m);
-                result.add(new ShopItem(m, tier, cat, price));
-            }
+            s.sampler.sample(e.getKey(), e.getValue(), rng, picks);
+        }
+        DropSampler.shuffle(picks, rng);
+        List<ShopItem> result = new ArrayList<>(picks.size());
+        for (Material m : picks) {
+            result.add(new ShopItem(m, s.table.tier(m), s.table.category(m), s.table.unitPrice(m)));
         }
-        Collections.shuffle(result, rng);
         return result;
     }
 
     public Category categorize(Material m) {
-        String name = m.name();
-        if (name.endsWith("_HELMET") || name.endsWith("_CHESTPLATE") || name.endsWith("_LEGGINGS") || name.endsWith("_BOOTS") || name.equals("ELYTRA")) return Category.ARMORS;
-        if (name.endsWith("_SWORD") || name.endsWith("_AXE") || name.endsWith("_PICKAXE") || name.endsWith("_SHOVEL") || name.endsWith("_HOE") || name.equals("BOW") || name.equals("CROSSBOW") || name.equals("TRIDENT") || name.equals("SHIELD")) return Category.TOOLS_WEAPONS;
-        if (name.endsWith("SPAWN_EGG")) return Category.SPAWN_EGGS;
-        if (m.isBlock()) return Category.BLOCKS;
-        return Category.GARBAGE;
+        return snapshot.table.category(m);
     }
 
     public ShopItem toShopItem(Material m) {
-        Category cat = categorize(m);
-        if (cat == Category.SPAWN_EGGS) {
-            double price = plugin.getConfig().getDouble("spawn_egg.price", 2500.0);
-            return new ShopItem(m, Tier.COMMON, cat, price); // tier unused in display for eggs
+        return toShopItem(snapshot.table, m);
+    }
+
+    private static ShopItem toShopItem(MaterialTable table, Material m) {
+        Category cat = table.category(m);
+        double price = table.unitPrice(m);
+        return switch (cat) {
+            case SPAWN_EGGS -> new ShopItem(m, Tier.COMMON, cat, price); // tier unused in display for eggs
+            case LUCKY_BLOCKS -> new ShopItem(m, Tier.EPIC, cat, price);
+            case GARBAGE -> new ShopItem(m, Tier.GARBAGE, cat, price);
+            default -> new ShopItem(m, table.tier(m), cat, price);
+        };
+    }
+
+    // Unit shop price for a material, including yield adjustments for multi-drop items (precomputed per reload)
+    public double unitShopPrice(Material m) {
+        return snapshot.table.unitPrice(m);
+    }
+
+    // --- Dynamic pricing ---
+    public double dynamicShopPrice(Material m) {
+        double base = unitShopPrice(m);
+        double mult = pricing.shopMultiplier(m);
+        return Math.round(base * mult * 100.0) / 100.0;
+    }
+
+    public double dynamicSellUnitPrice(Material m) {
+        double base = unitShopPrice(m);
+        double mult = pricing.sellMultiplier(m);
+        return Math.round(base * mult * 100.0) / 100.0;
+    }
+
+    // --- Filtering ---
+
+    /** Catalog materials matching {@code f}, in ordinal order. Only set bits of the combined index are visited. */
+    public List<Material> find(MaterialFilter f) {
+        CatalogSnapshot s = snapshot;
+        long[] bits = s.catalogBits.clone();
+        if (!f.tiers.isEmpty()) {
+            long[] any = MaterialBits.empty();
+            for (Tier t : f.tiers) MaterialBits.or(any, s.tierBits[t.ordinal()]);
+            MaterialBits.and(bits, any);
+        }
+        if (!f.categories.isEmpty()) {
+            long[] any = MaterialBits.empty();
+            for (Category c : f.categories) MaterialBits.or(any, s.categoryBits[c.ordinal()]);
+            MaterialBits.and(bits, any);
         }
-        if (cat == Category.LUCKY_BLOCKS) {
-            double price = plugin.getConfig().getDouble("lucky_block.price", 500.0);
-            return new ShopItem(m, Tier.EPIC, cat, price);
+        if (f.hasPriceBounds()) {
+            // Prune by base-price bucket: current price = base * multiplier, multiplier within the bounds of every
+            // stored value (not the config clamps, which journal-restored or pre-reload values may exceed)
+            double low = pricing.shopMultiplierLow();
+            double lo = f.minPrice / pricing.shopMultiplierHigh();
+            double hi = low > 0.0 ? f.maxPrice / low : Double.POSITIVE_INFINITY;
+            double[] bounds = CatalogSnapshot.PRICE_BUCKETS;
+            long[] any = MaterialBits.empty();
+            for (int b = 0; b < bounds.length; b++) {
+                double upper = b + 1 < bounds.length ? bounds[b + 1] : Double.POSITIVE_INFINITY;
+                if (bounds[b] <= hi && upper >= lo) MaterialBits.or(any, s.priceBucketBits[b]);
+            }
+            MaterialBits.and(bits, any);
         }
-        if (cat == Category.GARBAGE) {
-            return new ShopItem(m, Tier.GARBAGE, cat, garbagePrice);
+        boolean exact = f.hasPriceBounds() || f.hasMultiplierBounds();
+        long now = System.currentTimeMillis();
+        List<Material> out = new ArrayList<>(MaterialBits.cardinality(bits));
+        for (int i = MaterialBits.next(bits, 0); i >= 0; i = MaterialBits.next(bits, i + 1)) {
+            Material m = MaterialTable.MATERIALS[i];
+            if (exact) {
+                double mult = pricing.shopMultiplierAt(i, now);
+                double price = round2(s.table.unitPrice(m) * mult);
+                if (mult < f.minMultiplier || mult > f.maxMultiplier) continue;
+                if (price < f.minPrice || price > f.maxPrice) continue;
+            }
+            out.add(m);
         }
-        Tier t = tierFor(m);
-        double price = unitShopPrice(m);
-        return new ShopItem(m, t, cat, price);
+        return out;
     }
 
-    // Compute the unit shop price for a material, including yield adjustments for multi-drop items
-    public double unitShopPrice(Material m) {
-        Category cat = categorize(m);
-        if (cat == Category.SPAWN_EGGS) return plugin.getConfig().getDouble("spawn_egg.price", 2500.0);
-        if (cat == Category.LUCKY_BLOCKS) return plugin.getConfig().getDouble("lucky_block.price", 500.0);
-        if (cat == Category.GARBAGE) return garbagePrice;
-        Tier t = tierFor(m);
-        double base = priceFor(t);
-        double factor = yieldFactors.getOrDefault(m.name().toUpperCase(Locale.ROOT), 1.0);
-        double adjusted = Math.max(0.01, base * factor);
-        return Math.round(adjusted * 100.0) / 100.0;
+    // --- Search ---
+
+    /** Materials best matching {@code query} by name or configured alias; tolerant of typos. */
+    public List<Material> search(String query, int limit) {
+        return snapshot.search.search(query, limit);
     }
 
-    // --- Dynamic pricing ---
-    private void loadDynamicParams() {
-        var cfg = plugin.getConfig();
-        this.shopIncreaseEveryNBuys = Math.max(1, cfg.getInt("pricing.dynamic.shop_increase_every_n_buys", 3));
-        this.shopIncreaseFactor = Math.max(0.0, cfg.getDouble("pricing.dynamic.shop_increase_factor", 0.10));
-        this.maxShopMultiplier = Math.max(1.0, cfg.getDouble("pricing.dynamic.max_shop_multiplier", 3.0));
-        this.sellDecreasePerItem = Math.max(0.0, cfg.getDouble("pricing.dynamic.sell_decrease_per_item", 0.005));
-        this.minSellMultiplier = Math.max(0.0, cfg.getDouble("pricing.dynamic.min_sell_multiplier", 0.25));
-        this.shopDecreasePerItemOnSell = Math.max(0.0, cfg.getDouble("pricing.dynamic.shop_decrease_per_item_on_sell", 0.02));
-        this.minShopMultiplier = Math.max(0.1, cfg.getDouble("pricing.dynamic.min_shop_multiplier", 0.8));
+    /** Lowercase material names for command tab completion. */
+    public List<String> completeMaterial(String prefix, int limit) {
+        return snapshot.search.complete(prefix, limit);
     }
 
-    private double getShopMult(Material m) {
-        return shopMultipliers.getOrDefault(m, 1.0);
+    // --- Selling ---
+
+    /**
+     * Prices a whole inventory for selling in one pass against a single snapshot: buy price of each
+     * distinct material is resolved once, then scaled by sell.base_multiplier, the stack's enchant bonus
+     * and amount. Empty and unsellable slots quote 0.
+     */
+    public InventoryQuote quote(ItemStack[] contents) {
+        CatalogSnapshot s = snapshot;
+        CatalogSnapshot.Settings cfg = s.settings;
+        long now = System.currentTimeMillis();
+        int n = contents.length;
+        double[] prices = new double[n];
+        boolean[] sellable = new boolean[n];
+        Material[] materials = new Material[n];
+        double[] unit = new double[n];
+        int[] sold = new int[n];
+        int distinct = 0;
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            ItemStack it = contents[i];
+            if (it == null || it.getType() == Material.AIR) continue;
+            Material m = it.getType();
+            int d = 0;
+            while (d < distinct && materials[d] != m) d++;
+            if (d == distinct) {
+                materials[distinct++] = m;
+                // Current buy price for this material (what the player would pay)
+                unit[d] = m.name().endsWith("SPAWN_EGG") ? cfg.spawnEggPrice
+                        : round2(s.table.unitPrice(m) * pricing.shopMultiplierAt(m.ordinal(), now));
+            }
+            if (!s.isSellable(m)) continue;
+            double price = round2(unit[d] * enchantMultiplier(cfg, it) * cfg.sellBaseMultiplier * it.getAmount());
+            prices[i] = price;
+            sellable[i] = true;
+            sold[d] += it.getAmount();
+            total += price;
+        }
+        return new InventoryQuote(prices, sellable, round2(total), materials, sold, distinct);
     }
 
-    private double getSellMult(Material m) {
-        return sellMultipliers.getOrDefault(m, 1.0);
+    /** Current sell price of one plain unit, or -1 when the material can't be sold. */
+    public double sellUnitPrice(Material m) {
+        CatalogSnapshot s = snapshot;
+        if (!s.isSellable(m)) return -1.0;
+        double unit = m.name().endsWith("SPAWN_EGG") ? s.settings.spawnEggPrice : dynamicShopPrice(m);
+        return round2(unit * s.settings.sellBaseMultiplier);
     }
 
-    public double dynamicShopPrice(Material m) {
-        double base = unitShopPrice(m);
-        double mult = getShopMult(m);
-        return Math.round(base * mult * 100.0) / 100.0;
+    public boolean isSellable(ItemStack stack) {
+        return stack != null && stack.getType() != Material.AIR && snapshot.isSellable(stack.getType());
     }
 
-    public double dynamicSellUnitPrice(Material m) {
-        double base = unitShopPrice(m);
-        double mult = getSellMult(m);
-        return Math.round(base * mult * 100.0) / 100.0;
+    private static double enchantMultiplier(CatalogSnapshot.Settings cfg, ItemStack stack) {
+        if (!cfg.sellEnchantEnabled) return 1.0;
+        Map<Enchantment, Integer> ench = stack.getEnchantments();
+        if (ench == null || ench.isEmpty()) return 1.0;
+        int totalLevels = 0;
+        for (Map.Entry<Enchantment, Integer> e : ench.entrySet()) {
+            if (!cfg.sellEnchantIncludeCurses && isCurse(e.getKey())) continue;
+            totalLevels += Math.max(0, e.getValue());
+        }
+        return Math.min(1.0 + cfg.sellEnchantPerLevel * totalLevels, cfg.sellEnchantMaxMultiplier);
+    }
+
+    private static boolean isCurse(Enchantment enchType) {
+        try {
+            return (boolean) Enchantment.class.getMethod("isCursed").invoke(enchType);
+        } catch (Throwable ignore) {
+            return enchType.getKey().getKey().toUpperCase(Locale.ROOT).contains("CURSE");
+        }
+    }
+
+    private static double round2(double v) {
+        return Math.round(v * 100.0) / 100.0;
     }
 
     public void recordPurchase(Material m) {
-        int cnt = buysSinceAdjust.getOrDefault(m, 0) + 1;
-        buysSinceAdjust.put(m, cnt);
-        if (cnt % shopIncreaseEveryNBuys == 0) {
-            double cur = getShopMult(m);
-            double next = cur * (1.0 + shopIncreaseFactor);
-            if (next > maxShopMultiplier) next = maxShopMultiplier;
-            shopMultipliers.put(m, next);
+        CatalogSnapshot.Settings p = snapshot.settings;
+        int cnt = pricing.incrementBuys(m);
+        if (cnt % p.shopIncreaseEveryNBuys == 0) {
+            pricing.scaleShop(m, 1.0 + p.shopIncreaseFactor, 0.0, p.maxShopMultiplier);
+            priceVersion.incrementAndGet();
         }
+        if (journal != null) journal.append(m);
     }
 
     public void recordSale(Material m, int amount) {
         if (amount <= 0) return;
+        CatalogSnapshot.Settings p = snapshot.settings;
         // Reduce sell multiplier (legacy, used if sell price is based on sell multiplier)
-        double curSell = getSellMult(m);
-        double decSell = sellDecreasePerItem * amount;
-        double nextSell = curSell * Math.max(0.0, 1.0 - decSell);
-        if (nextSell < minSellMultiplier) nextSell = minSellMultiplier;
-        sellMultipliers.put(m, nextSell);
+        double decSell = p.sellDecreasePerItem * amount;
+        pricing.scaleSell(m, Math.max(0.0, 1.0 - decSell), p.minSellMultiplier, Double.MAX_VALUE);
 
         // Also reduce the shop (buy) multiplier to reflect market supply; affects buy prices and thus sell=0.45*buy
-        double curShop = getShopMult(m);
-        double decShop = shopDecreasePerItemOnSell * amount;
-        double nextShop = curShop * Math.max(0.0, 1.0 - decShop);
-        if (nextShop < minShopMultiplier) nextShop = minShopMultiplier;
-        shopMultipliers.put(m, nextShop);
-    }
-
-    // Heuristic filter for useful items: include equipment and functional blocks, exclude misc/garbage
-    private boolean isUseful(Material m) {
-        String n = m.name();
-        if (n.endsWith("SPAWN_EGG")) return false;
-        if (n.endsWith("_HELMET") || n.endsWith("_CHESTPLATE") || n.endsWith("_LEGGINGS") || n.endsWith("_BOOTS") || n.equals("ELYTRA")) return true;
-        if (n.endsWith("_SWORD") || n.endsWith("_AXE") || n.endsWith("_PICKAXE") || n.endsWith("_SHOVEL") || n.endsWith("_HOE") || n.equals("BOW") || n.equals("CROSSBOW") || n.equals("TRIDENT") || n.equals("SHIELD") || n.equals("FISHING_ROD") || n.equals("SHEARS")) return true;
-        if (m.isBlock()) {
-            // Whitelist functional blocks
-            return switch (m) {
-                case ENCHANTING_TABLE, ANVIL, GRINDSTONE, SMITHING_TABLE, CARTOGRAPHY_TABLE, STONECUTTER, LOOM,
-                     FURNACE, BLAST_FURNACE, SMOKER, BREWING_STAND, BEACON, ENDER_CHEST,
-                     SHULKER_BOX, WHITE_SHULKER_BOX, ORANGE_SHULKER_BOX, MAGENTA_SHULKER_BOX, LIGHT_BLUE_SHULKER_BOX,
-                     YELLOW_SHULKER_BOX, LIME_SHULKER_BOX, PINK_SHULKER_BOX, GRAY_SHULKER_BOX, LIGHT_GRAY_SHULKER_BOX,
-                     CYAN_SHULKER_BOX, PURPLE_SHULKER_BOX, BLUE_SHULKER_BOX, BROWN_SHULKER_BOX, GREEN_SHULKER_BOX,
-                     RED_SHULKER_BOX, BLACK_SHULKER_BOX, HOPPER, GOLDEN_APPLE, ENCHANTED_GOLDEN_APPLE  -> true;
-                default -> false;
-            };
-        }
-        return false;
+        double decShop = p.shopDecreasePerItemOnSell * amount;
+        pricing.scaleShop(m, Math.max(0.0, 1.0 - decShop), p.minShopMultiplier, Double.MAX_VALUE);
+        priceVersion.incrementAndGet();
+        if (journal != null) journal.append(m);
     }
 }
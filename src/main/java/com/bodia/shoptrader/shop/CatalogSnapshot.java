@@ -0,0 +1,225 @@
+package com.bodia.shoptrader.shop;
+
+import com.bodia.shoptrader.model.Category;
+import com.bodia.shoptrader.model.Tier;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.*;
+
+/**
+ * Immutable catalog state published by {@link Catalog} through a single volatile reference.
+ * A reload builds a fresh snapshot off to the side and swaps it in, so readers never observe
+ * half-rebuilt lists. Only {@link Settings#read} touches the Bukkit config; {@link #build} is
+ * safe to run on an async thread.
+ */
+final class CatalogSnapshot {
+
+    /** Raw config values; read on the main thread. */
+    static final class Settings {
+        final Map<Tier, Double> tierPrices = new EnumMap<>(Tier.class);
+        final Map<String, Double> yieldFactors = new HashMap<>(); // per-material name -> factor
+        final Map<String, Double> dropWeights = new HashMap<>();  // per-material name -> weight within tier
+        final Map<String, List<String>> searchAliases = new HashMap<>(); // per-material name -> extra search names
+        double garbagePrice;
+        double spawnEggPrice;
+        double luckyBlockPrice;
+
+        // Dynamic pricing parameters
+        int shopIncreaseEveryNBuys;
+        double shopIncreaseFactor;     // multiplicative, e.g., 0.10 => x1.10
+        double maxShopMultiplier;
+        double sellDecreasePerItem;    // per unit sold, e.g., 0.005 => -0.5% each
+        double minSellMultiplier;
+        double shopDecreasePerItemOnSell; // per unit sold, reduces shop (buy) multiplier
+        double minShopMultiplier;         // floor for shop (buy) multiplier
+        long halfLifeMillis;              // mean reversion toward 1.0x; 0 disables
+
+        // Sell policy
+        double sellBaseMultiplier;        // fraction of the current buy price paid to the player
+        boolean blockGarbage;
+        final Set<String> sellBlacklist = new HashSet<>();
+        boolean sellEnchantEnabled;
+        boolean sellEnchantIncludeCurses;
+        double sellEnchantPerLevel;
+        double sellEnchantMaxMultiplier;
+
+        static Settings read(FileConfiguration cfg) {
+            Settings s = new Settings();
+            s.tierPrices.put(Tier.COMMON, cfg.getDouble("prices.common", 100.0));
+            s.tierPrices.put(Tier.UNCOMMON, cfg.getDouble("prices.uncommon", 300.0));
+            s.tierPrices.put(Tier.EPIC, cfg.getDouble("prices.epic", 1000.0));
+            s.tierPrices.put(Tier.LEGENDARY, cfg.getDouble("prices.legendary", 5000.0));
+            s.garbagePrice = cfg.getDouble("prices.garbage", 2.0);
+            s.spawnEggPrice = cfg.getDouble("spawn_egg.price", 2500.0);
+            s.luckyBlockPrice = cfg.getDouble("lucky_block.price", 500.0);
+
+            // pricing.yield.by_material: map of MATERIAL_NAME -> double factor
+            readFactors(cfg, "pricing.yield.by_material", s.yieldFactors);
+            // rotation.weights: optional map of MATERIAL_NAME -> relative weight within its tier (default 1.0)
+            readFactors(cfg, "rotation.weights", s.dropWeights);
+            // search.aliases: MATERIAL_NAME -> name or list of names (e.g. Ukrainian) to search by
+            if (cfg.isConfigurationSection("search.aliases")) {
+                var sec = cfg.getConfigurationSection("search.aliases");
+                for (String key : sec.getKeys(false)) {
+                    List<String> names = sec.isString(key) ? List.of(sec.getString(key)) : sec.getStringList(key);
+                    s.searchAliases.put(key.toUpperCase(Locale.ROOT), names);
+                }
+            }
+
+            s.shopIncreaseEveryNBuys = Math.max(1, cfg.getInt("pricing.dynamic.shop_increase_every_n_buys", 3));
+            s.shopIncreaseFactor = Math.max(0.0, cfg.getDouble("pricing.dynamic.shop_increase_factor", 0.10));
+            s.maxShopMultiplier = Math.max(1.0, cfg.getDouble("pricing.dynamic.max_shop_multiplier", 3.0));
+            s.sellDecreasePerItem = Math.max(0.0, cfg.getDouble("pricing.dynamic.sell_decrease_per_item", 0.005));
+            s.minSellMultiplier = Math.max(0.0, cfg.getDouble("pricing.dynamic.min_sell_multiplier", 0.25));
+            s.shopDecreasePerItemOnSell = Math.max(0.0, cfg.getDouble("pricing.dynamic.shop_decrease_per_item_on_sell", 0.02));
+            s.minShopMultiplier = Math.max(0.1, cfg.getDouble("pricing.dynamic.min_shop_multiplier", 0.8));
+            double halfLifeMinutes = Math.max(0.0, cfg.getDouble("pricing.dynamic.half_life_minutes", 120.0));
+            s.halfLifeMillis = (long) (halfLifeMinutes * 60_000L);
+
+            s.sellBaseMultiplier = cfg.getDouble("sell.base_multiplier", 0.45);
+            s.blockGarbage = cfg.getBoolean("sell.block_garbage_category", false);
+            for (String name : cfg.getStringList("sell.blacklist")) s.sellBlacklist.add(name.toUpperCase(Locale.ROOT));
+            s.sellEnchantEnabled = cfg.getBoolean("sell.enchant.enabled", true);
+            s.sellEnchantIncludeCurses = cfg.getBoolean("sell.enchant.include_curses", false);
+            s.sellEnchantPerLevel = cfg.getDouble("sell.enchant.per_level_bonus", 0.05); // +5% per level by default
+            s.sellEnchantMaxMultiplier = cfg.getDouble("sell.enchant.max_multiplier", 3.0);
+            return s;
+        }
+
+        private static void readFactors(FileConfiguration cfg, String path, Map<String, Double> out) {
+            if (!cfg.isConfigurationSection(path)) return;
+            var sec = cfg.getConfigurationSection(path);
+            for (String key : sec.getKeys(false)) {
+                out.put(key.toUpperCase(Locale.ROOT), sec.getDouble(key, 1.0));
+            }
+        }
+    }
+
+    final Settings settings;
+    final MaterialTable table; // ordinal-indexed classification
+    final Map<Category, List<Material>> categoryMaterials;
+    final Map<Tier, List<Material>> tierMaterials;
+    final DropSampler sampler; // per-tier drop pools
+    final MaterialSearchIndex search;
+    private final boolean[] sellable; // by ordinal
+
+    // Filter index: bitsets over material ordinals (see MaterialBits)
+    static final double[] PRICE_BUCKETS = {0, 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000}; // lower bounds
+    final long[] catalogBits;          // every material listed in some category
+    final long[][] tierBits;           // by Tier ordinal
+    final long[][] categoryBits;       // by Category ordinal
+    final long[][] priceBucketBits;    // by PRICE_BUCKETS index, on base unit price
+
+    private CatalogSnapshot(Settings settings, MaterialTable table, Map<Category, List<Material>> categoryMaterials,
+                            Map<Tier, List<Material>> tierMaterials, DropSampler sampler, MaterialSearchIndex search,
+                            boolean[] sellable) {
+        this.settings = settings;
+        this.table = table;
+        this.categoryMaterials = categoryMaterials;
+        this.tierMaterials = tierMaterials;
+        this.sampler = sampler;
+        this.search = search;
+        this.sellable = sellable;
+
+        this.catalogBits = MaterialBits.empty();
+        this.tierBits = new long[Tier.values().length][];
+        this.categoryBits = new long[Category.values().length][];
+        this.priceBucketBits = new long[PRICE_BUCKETS.length][];
+        for (int i = 0; i < tierBits.length; i++) tierBits[i] = MaterialBits.empty();
+        for (int i = 0; i < categoryBits.length; i++) categoryBits[i] = MaterialBits.empty();
+        for (int i = 0; i < priceBucketBits.length; i++) priceBucketBits[i] = MaterialBits.empty();
+        for (Map.Entry<Tier, List<Material>> e : tierMaterials.entrySet()) {
+            for (Material m : e.getValue()) MaterialBits.set(tierBits[e.getKey().ordinal()], m.ordinal());
+        }
+        for (Map.Entry<Category, List<Material>> e : categoryMaterials.entrySet()) {
+            for (Material m : e.getValue()) {
+                MaterialBits.set(categoryBits[e.getKey().ordinal()], m.ordinal());
+                MaterialBits.set(catalogBits, m.ordinal());
+                MaterialBits.set(priceBucketBits[priceBucket(table.unitPrice(m))], m.ordinal());
+            }
+        }
+    }
+
+    static int priceBucket(double price) {
+        int b = PRICE_BUCKETS.length - 1;
+        while (b > 0 && price < PRICE_BUCKETS[b]) b--;
+        return b;
+    }
+
+    boolean isSellable(Material m) {
+        return sellable[m.ordinal()];
+    }
+
+    static CatalogSnapshot build(Settings s) {
+        MaterialTable table = MaterialTable.build(s.tierPrices, s.garbagePrice, s.spawnEggPrice,
+                s.luckyBlockPrice, s.yieldFactors);
+        Map<Category, List<Material>> byCategory = buildCategoryMaterials(table);
+        Map<Tier, List<Material>> byTier = buildTierClassification(table);
+        return new CatalogSnapshot(s, table, byCategory, byTier, new DropSampler(byTier, s.dropWeights),
+                new MaterialSearchIndex(s.searchAliases), buildSellable(s, table));
+    }
+
+    private static boolean[] buildSellable(Settings s, MaterialTable table) {
+        boolean[] out = new boolean[MaterialTable.MATERIALS.length];
+        for (Material m : MaterialTable.MATERIALS) {
+            if (m == Material.AIR) continue;
+            // Hard-block certain types
+            if (m.name().endsWith("SPAWN_EGG")) continue;
+            Category cat = table.category(m);
+            if (cat == Category.LUCKY_BLOCKS) continue;
+            if (s.sellBlacklist.contains(m.name())) continue;
+            // Optionally block garbage category entirely
+            if (s.blockGarbage && cat == Category.GARBAGE) continue;
+            out[m.ordinal()] = true;
+        }
+        return out;
+    }
+
+    private static Map<Category, List<Material>> buildCategoryMaterials(MaterialTable table) {
+        Map<Category, List<Material>> out = new EnumMap<>(Category.class);
+        out.put(Category.ARMORS, new ArrayList<>());
+        out.put(Category.TOOLS_WEAPONS, new ArrayList<>());
+        out.put(Category.BLOCKS, new ArrayList<>());
+        out.put(Category.SPAWN_EGGS, new ArrayList<>());
+        out.put(Category.LUCKY_BLOCKS, new ArrayList<>());
+        out.put(Category.GARBAGE, new ArrayList<>());
+
+        for (Material m : MaterialTable.MATERIALS) {
+            if (!m.isItem()) continue;
+            Category cat = table.category(m);
+            if (cat == Category.SPAWN_EGGS) {
+                out.get(Category.SPAWN_EGGS).add(m);
+                continue;
+            }
+            if (!table.isUseful(m)) continue;
+            // Useful armor, tools/weapons and functional blocks only; non-useful filtered above
+            if (cat == Category.ARMORS || cat == Category.TOOLS_WEAPONS || cat == Category.BLOCKS) {
+                out.get(cat).add(m);
+            }
+        }
+
+        // Lucky blocks: we'll represent as a custom item, not a vanilla material classification here.
+        out.get(Category.LUCKY_BLOCKS).add(Material.SPONGE);
+        return freeze(out);
+    }
+
+    private static Map<Tier, List<Material>> buildTierClassification(MaterialTable table) {
+        Map<Tier, List<Material>> out = new EnumMap<>(Tier.class);
+        for (Tier t : Tier.values()) out.put(t, new ArrayList<>());
+
+        for (Material m : MaterialTable.MATERIALS) {
+            if (!m.isItem()) continue;
+            if (table.category(m) == Category.SPAWN_EGGS) continue; // exclude spawn eggs from tiering
+            if (!table.isUseful(m)) continue; // exclude misc/garbage
+
+            out.get(table.tier(m)).add(m);
+        }
+        return freeze(out);
+    }
+
+    private static <K extends Enum<K>> Map<K, List<Material>> freeze(Map<K, List<Material>> map) {
+        for (Map.Entry<K, List<Material>> e : map.entrySet()) e.setValue(List.copyOf(e.getValue()));
+        return Collections.unmodifiableMap(map);
+    }
+}
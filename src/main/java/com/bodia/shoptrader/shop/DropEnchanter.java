@@ -0,0 +1,113 @@
+package com.bodia.shoptrader.shop;
+
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random enchantments for rotating shop items. Per-family enchant tables are built once and looked up by
+ * material ordinal; a roll is a pure function of the material and the caller's {@link SplittableRandom},
+ * so it can run while a drop is prepared off the main thread and a drop rebuilt from its seed gets the
+ * same enchants.
+ */
+final class DropEnchanter {
+
+    private DropEnchanter() {}
+
+    // Families that may appear at most once per drop; other items may repeat
+    static String groupKeyFor(Material m) {
+        String n = m.name();
+        if (n.endsWith("_SWORD")) return "SWORD";
+        if (n.endsWith("_AXE")) return "AXE";
+        if (n.equals("BOW")) return "BOW";
+        if (n.equals("CROSSBOW")) return "CROSSBOW";
+        if (n.equals("TRIDENT")) return "TRIDENT";
+        if (n.equals("SHIELD")) return "SHIELD";
+        if (n.endsWith("_SHULKER_BOX")) return "SHULKER_BOX";
+        return null;
+    }
+
+    // Enchant table of one item family: candidate enchantments and their max levels
+    private static final class Table {
+        final Enchantment[] enchants;
+        final int[] maxLevels;
+
+        Table(Object... pairs) {
+            int n = pairs.length / 2;
+            this.enchants = new Enchantment[n];
+            this.maxLevels = new int[n];
+            for (int i = 0; i < n; i++) {
+                enchants[i] = (Enchantment) pairs[2 * i];
+                maxLevels[i] = (Integer) pairs[2 * i + 1];
+            }
+        }
+    }
+
+    private static final Table SWORD = new Table(
+            Enchantment.SHARPNESS, 5, Enchantment.SMITE, 5, Enchantment.BANE_OF_ARTHROPODS, 5,
+            Enchantment.LOOTING, 3, Enchantment.SWEEPING_EDGE, 3, Enchantment.FIRE_ASPECT, 2,
+            Enchantment.KNOCKBACK, 2, Enchantment.UNBREAKING, 3, Enchantment.MENDING, 1);
+    private static final Table AXE = new Table(
+            Enchantment.EFFICIENCY, 5, Enchantment.FORTUNE, 3, Enchantment.SILK_TOUCH, 1,
+            Enchantment.SHARPNESS, 5, Enchantment.UNBREAKING, 3, Enchantment.MENDING, 1);
+    private static final Table BOW = new Table(
+            Enchantment.POWER, 5, Enchantment.PUNCH, 2, Enchantment.FLAME, 1,
+            Enchantment.INFINITY, 1, Enchantment.UNBREAKING, 3, Enchantment.MENDING, 1);
+    private static final Table CROSSBOW = new Table(
+            Enchantment.QUICK_CHARGE, 3, Enchantment.MULTISHOT, 1, Enchantment.PIERCING, 4,
+            Enchantment.UNBREAKING, 3, Enchantment.MENDING, 1);
+    private static final Table TRIDENT = new Table(
+            Enchantment.IMPALING, 5, Enchantment.LOYALTY, 3, Enchantment.RIPTIDE, 3,
+            Enchantment.CHANNELING, 1, Enchantment.UNBREAKING, 3, Enchantment.MENDING, 1);
+    // Armor pieces and elytra share one pool
+    private static final Table ARMOR = new Table(
+            Enchantment.PROTECTION, 4, Enchantment.BLAST_PROTECTION, 4, Enchantment.FIRE_PROTECTION, 4,
+            Enchantment.PROJECTILE_PROTECTION, 4, Enchantment.THORNS, 3, Enchantment.UNBREAKING, 3,
+            Enchantment.MENDING, 1, Enchantment.FEATHER_FALLING, 4, Enchantment.RESPIRATION, 3,
+            Enchantment.AQUA_AFFINITY, 1);
+
+    // Table per material ordinal, resolved once; null = nothing to roll
+    private static final Table[] BY_MATERIAL = new Table[MaterialTable.MATERIALS.length];
+    static {
+        for (Material m : MaterialTable.MATERIALS) BY_MATERIAL[m.ordinal()] = tableFor(m);
+    }
+
+    private static Table tableFor(Material m) {
+        String n = m.name();
+        if (n.endsWith("_SWORD")) return SWORD;
+        if (n.endsWith("_AXE")) return AXE;
+        if (n.equals("BOW")) return BOW;
+        if (n.equals("CROSSBOW")) return CROSSBOW;
+        if (n.equals("TRIDENT")) return TRIDENT;
+        if (n.endsWith("_HELMET") || n.endsWith("_CHESTPLATE") || n.endsWith("_LEGGINGS") || n.endsWith("_BOOTS")
+                || n.equals("ELYTRA")) return ARMOR;
+        return null;
+    }
+
+    /**
+     * Rolls 1..3 distinct enchantments from the material's table. Picks are a partial sample (Floyd)
+     * over the table indices, so nothing is copied or shuffled; the result is a descriptor, not an item.
+     */
+    static EnchantRoll roll(Material m, SplittableRandom rng) {
+        Table t = BY_MATERIAL[m.ordinal()];
+        if (t == null) return EnchantRoll.NONE;
+        int n = t.enchants.length;
+        int count = 1 + rng.nextInt(Math.min(3, n)); // 1..3
+        Enchantment[] enchants = new Enchantment[count];
+        int[] levels = new int[count];
+        double quality = 0.0;
+        int taken = 0; // bitmask of used table indices (tables are far below 32 entries)
+        for (int j = n - count, k = 0; j < n; j++, k++) {
+            int pick = rng.nextInt(j + 1);
+            if ((taken & (1 << pick)) != 0) pick = j;
+            taken |= 1 << pick;
+            int ml = t.maxLevels[pick];
+            enchants[k] = t.enchants[pick];
+            levels[k] = 1 + rng.nextInt(ml);
+            quality += (double) levels[k] / (double) ml;
+        }
+        return new EnchantRoll(enchants, levels, quality);
+    }
+}
@@ -1,78 +1,202 @@
 package com.bodia.shoptrader.shop;
 
-import com.bodia.shoptrader.model.ShopItem;
 import com.bodia.shoptrader.model.Tier;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.Plugin;
 
 import java.util.*;
 
+/**
+ * Registry of per-trader rotations. Every trader owns its own drop and settings; all of them are
+ * driven by {@link #tick()} from the plugin's once-per-second task, which only touches the rotations that are due.
+ */
 public class DropManager {
 
+    public static final String DEFAULT_TRADER = "default";
+
+    /** Rotation config captured once per trader at start, so preparing a drop never touches the Bukkit config. */
+    static final class RotationSettings {
+        final Map<Tier, Integer> counts = new EnumMap<>(Tier.class);
+        int rotationMinutes;
+        int cycleSeconds;
+        boolean personal;
+        int personalCacheSize;
+        double enchantCoefficient;
+        double enchantCap;
+    }
+
     private final Plugin plugin;
     private final Catalog catalog;
-    private final Random rng = new Random();
+    private final SplittableRandom seeds = new SplittableRandom();
 
-    private List<ShopItem> currentDrop = new ArrayList<>();
-    private int taskId = -1;
-    private long nextRollAtMillis = 0L;
-    private int rotationMinutes;
-    private int cycleSeconds;
+    private final Map<String, TraderRotation> rotations = new LinkedHashMap<>();
+    // Rotations ordered by their next roll time; the shared task polls only the due head entries
+    private final PriorityQueue<TraderRotation> schedule = new PriorityQueue<>(Comparator.comparingLong(r -> r.nextRollAtMillis));
+    // Survives reloads; sized once at construction
+    private final RotationHistory history;
 
     public DropManager(Plugin plugin, Catalog catalog) {
         this.plugin = plugin;
         this.catalog = catalog;
+        this.history = new RotationHistory(plugin.getConfig().getInt("rotation.history_size", 96));
     }
 
-    public void start() {
-        this.rotationMinutes = plugin.getConfig().getInt("rotation.minutes", 30);
-        this.cycleSeconds = Math.max(1, plugin.getConfig().getInt("rotation.cycle_seconds", 30));
-        rollDrop();
-        long period = rotationMinutes * 60L * 20L; // ticks
-        taskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this::rollDrop, period, period);
+    public void start(Collection<String> traderIds) {
+        for (String id : traderIds) add(id);
+        if (rotations.isEmpty()) add(DEFAULT_TRADER);
     }
 
     public void stop() {
-        if (taskId != -1) {
-            Bukkit.getScheduler().cancelTask(taskId);
-            taskId = -1;
+        for (TraderRotation r : rotations.values()) retire(r);
+        rotations.clear();
+        schedule.clear();
+    }
+
+    /** Starts a rotation for {@code traderId} with its own settings and first drop; no-op if it already runs. */
+    public TraderRotation add(String traderId) {
+        TraderRotation r = rotations.get(traderId);
+        if (r != null) return r;
+        r = new TraderRotation(traderId, readSettings(traderId));
+        rotations.put(traderId, r);
+        rollDrop(r);
+        schedule.add(r);
+        return r;
+    }
+
+    public void remove(String traderId) {
+        TraderRotation r = rotations.remove(traderId);
+        if (r == null) return;
+        schedule.remove(r);
+        retire(r);
+    }
+
+    private void retire(TraderRotation r) {
+        r.epoch++;
+        r.next = null;
+    }
+
+    public TraderRotation rotation(String traderId) {
+        return rotations.get(traderId);
+    }
+
+    /** Rotation for {@code traderId}, falling back to the default trader and then to any trader. */
+    public TraderRotation rotationFor(String traderId) {
+        TraderRotation r = traderId != null ? rotations.get(traderId) : null;
+        if (r == null) r = rotations.get(DEFAULT_TRADER);
+        if (r == null && !rotations.isEmpty()) r = rotations.values().iterator().next();
+        return r;
+    }
+
+    public Collection<TraderRotation> rotations() {
+        return Collections.unmodifiableCollection(rotations.values());
+    }
+
+    // Per-trader values live under traders.<id>.rotation and fall back to the global rotation section
+    private RotationSettings readSettings(String traderId) {
+        FileConfiguration cfg = plugin.getConfig();
+        ConfigurationSection own = cfg.getConfigurationSection("traders." + traderId + ".rotation");
+        RotationSettings rs = new RotationSettings();
+        rs.rotationMinutes = Math.max(1, rotationInt(cfg, own, "minutes", 30));
+        rs.cycleSeconds = Math.max(1, rotationInt(cfg, own, "cycle_seconds", 30));
+        rs.counts.put(Tier.COMMON, rotationInt(cfg, own, "counts.common", 4));
+        rs.counts.put(Tier.UNCOMMON, rotationInt(cfg, own, "counts.uncommon", 3));
+        rs.counts.put(Tier.EPIC, rotationInt(cfg, own, "counts.epic", 2));
+        rs.counts.put(Tier.LEGENDARY, rotationInt(cfg, own, "counts.legendary", 1));
+        rs.personal = own != null && own.contains("personal") ? own.getBoolean("personal") : cfg.getBoolean("rotation.personal", false);
+        rs.personalCacheSize = Math.max(1, cfg.getInt("rotation.personal_cache_size", 512));
+        rs.enchantCoefficient = cfg.getDouble("shop.enchant.random.coefficient", 0.25);
+        rs.enchantCap = cfg.getDouble("shop.enchant.max_multiplier", 3.0);
+        return rs;
+    }
+
+    private static int rotationInt(FileConfiguration cfg, ConfigurationSection own, String key, int def) {
+        if (own != null && own.contains(key)) return own.getInt(key, def);
+        return cfg.getInt("rotation." + key, def);
+    }
+
+    /** Rolls every rotation whose timer ran out; O(due) per call regardless of how many traders exist. */
+    public void tick() {
+        long now = System.currentTimeMillis();
+        TraderRotation r;
+        while ((r = schedule.peek()) != null && r.nextRollAtMillis <= now) {
+            schedule.poll();
+            rollDrop(r);
+            schedule.add(r);
         }
     }
 
-    public void rollDrop() {
-        Map<Tier, Integer> counts = new EnumMap<>(Tier.class);
-        counts.put(Tier.COMMON, plugin.getConfig().getInt("rotation.counts.common", 4));
-        counts.put(Tier.UNCOMMON, plugin.getConfig().getInt("rotation.counts.uncommon", 3));
-        counts.put(Tier.EPIC, plugin.getConfig().getInt("rotation.counts.epic", 2));
-        counts.put(Tier.LEGENDARY, plugin.getConfig().getInt("rotation.counts.legendary", 1));
-        this.currentDrop = catalog.rollDrop(counts, rng);
-        plugin.getLogger().info("Rolled new shop drop with " + currentDrop.size() + " items.");
+    /** Rotates {@code traderId} immediately and restarts its timer. */
+    public void rollDrop(String traderId) {
+        TraderRotation r = rotations.get(traderId);
+        if (r == null) return;
+        schedule.remove(r);
+        rollDrop(r);
+        schedule.add(r);
+    }
+
+    // Caller keeps 'schedule' consistent: r must not be queued while nextRollAtMillis changes
+    private void rollDrop(TraderRotation r) {
+        PreparedDrop ready = r.next;
+        r.next = null;
+        r.personalDrops.clear();
+        // Normally prepared during the previous rotation; only the very first roll (or a slow async task) builds inline
+        r.current = ready != null ? ready : PreparedDrop.prepare(catalog, r.settings, seeds.nextLong());
+        plugin.getLogger().info("Rolled new shop drop for trader '" + r.traderId() + "' with " + r.current.size() + " items.");
+        r.record = history.record(r.traderId(), r.current, r.settings.personal, catalog);
         // Set next roll time
-        this.nextRollAtMillis = System.currentTimeMillis() + rotationMinutes * 60_000L;
+        r.nextRollAtMillis = System.currentTimeMillis() + r.settings.rotationMinutes * 60_000L;
+        prepareNext(r);
     }
 
-    public List<ShopItem> getCurrentDrop() {
-        return currentDrop;
+    public RotationHistory history() {
+        return history;
     }
 
-    public long getSecondsRemaining() {
-        long now = System.currentTimeMillis();
-        long diff = nextRollAtMillis - now;
-        return Math.max(0L, diff / 1000L);
+    /** Counts a purchase of slot {@code index} of {@code drop} by {@code player} in the trader's live history record. */
+    public void recordPurchase(String traderId, UUID player, PreparedDrop drop, int index) {
+        TraderRotation r = rotationFor(traderId);
+        if (r == null || r.record == null) return;
+        if (drop == r.current) RotationHistory.purchase(r.record, index);
+        // A player's own drop of this rotation; pages left open from an earlier rotation are not counted
+        else if (r.settings.personal && drop != null && r.personalDrops.get(player) == drop) r.record.personalPurchases++;
     }
 
-    public int getRotationMinutes() {
-        return rotationMinutes;
+    /**
+     * Drop shown to {@code player}: the shared drop, or in personal mode one derived from the rotation seed and
+     * the player's UUID. Derived drops are rolled lazily on first view and only cached, never stored, since the
+     * same (seed, player) pair always rebuilds the same drop.
+     */
+    public PreparedDrop dropFor(TraderRotation r, UUID player) {
+        PreparedDrop shared = r.current;
+        if (!r.settings.personal || shared == null || player == null) return shared;
+        PreparedDrop d = r.personalDrops.get(player);
+        if (d == null) {
+            d = PreparedDrop.prepare(catalog, r.settings, personalSeed(shared.seed, player));
+            r.personalDrops.put(player, d);
+        }
+        return d;
     }
 
-    public int getCycleSeconds() {
-        return cycleSeconds;
+    // SplitMix64 finalizer over the rotation seed and both UUID halves
+    static long personalSeed(long rotationSeed, UUID player) {
+        long z = rotationSeed ^ player.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(player.getLeastSignificantBits(), 32);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
-    public int getCycleIndex() {
-        long total = rotationMinutes * 60L;
-        long elapsed = total - getSecondsRemaining();
-        if (cycleSeconds <= 0) return 0;
-        return (int) (elapsed / cycleSeconds);
+    private void prepareNext(TraderRotation r) {
+        final int myEpoch = r.epoch;
+        final RotationSettings rs = r.settings;
+        final long seed = seeds.nextLong();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            PreparedDrop prepared = PreparedDrop.prepare(catalog, rs, seed);
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (myEpoch == r.epoch) r.next = prepared;
+            });
+        });
     }
 }
@@ -0,0 +1,167 @@
+package com.bodia.shoptrader.shop;
+
+import com.bodia.shoptrader.model.Tier;
+import org.bukkit.Material;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Immutable per-tier drop pools, built once per catalog load.
+ * Picks k distinct materials in O(k) (Floyd's algorithm) without copying the pool; tiers with
+ * configured per-material weights use a Vose alias table with rejection of repeats instead.
+ * All randomness comes from the caller's {@link SplittableRandom}, so a drop is fully
+ * reproducible from its seed.
+ */
+final class DropSampler {
+
+    private static final class Pool {
+        final Material[] materials;
+        final double[] weights; // null when the pool is uniform
+        final double[] prob;    // alias table over weights
+        final int[] alias;
+
+        Pool(Material[] materials, double[] weights) {
+            this.materials = materials;
+            this.weights = weights;
+            if (weights == null) {
+                this.prob = null;
+                this.alias = null;
+            } else {
+                int n = materials.length;
+                this.prob = new double[n];
+                this.alias = new int[n];
+                buildAlias(weights, prob, alias);
+            }
+        }
+
+        int pick(SplittableRandom rng) {
+            int i = rng.nextInt(materials.length);
+            return prob == null || rng.nextDouble() < prob[i] ? i : alias[i];
+        }
+    }
+
+    private final Map<Tier, Pool> pools = new EnumMap<>(Tier.class);
+
+    DropSampler(Map<Tier, List<Material>> tierMaterials, Map<String, Double> weights) {
+        for (Map.Entry<Tier, List<Material>> e : tierMaterials.entrySet()) {
+            Material[] mats = e.getValue().toArray(new Material[0]);
+            double[] w = null;
+            if (!weights.isEmpty()) {
+                boolean custom = false;
+                double[] tmp = new double[mats.length];
+                for (int i = 0; i < mats.length; i++) {
+                    Double cfg = weights.get(mats[i].name().toUpperCase(Locale.ROOT));
+                    tmp[i] = cfg != null ? Math.max(0.0, cfg) : 1.0;
+                    if (tmp[i] != 1.0) custom = true;
+                }
+                if (custom) {
+                    // Zero-weight materials never drop, so they are left out of the pool entirely
+                    int keep = 0;
+                    for (int i = 0; i < mats.length; i++) {
+                        if (tmp[i] > 0.0) {
+                            mats[keep] = mats[i];
+                            tmp[keep] = tmp[i];
+                            keep++;
+                        }
+                    }
+                    mats = Arrays.copyOf(mats, keep);
+                    w = Arrays.copyOf(tmp, keep);
+                }
+            }
+            if (mats.length == 0) continue;
+            pools.put(e.getKey(), new Pool(mats, w));
+        }
+    }
+
+    /** Appends up to {@code k} distinct materials of {@code tier} to {@code out}. */
+    void sample(Tier tier, int k, SplittableRandom rng, List<Material> out) {
+        Pool pool = pools.get(tier);
+        if (pool == null || k <= 0) return;
+        Material[] mats = pool.materials;
+        int n = mats.length;
+        int start = out.size();
+        if (k >= n) {
+            for (Material m : mats) out.add(m);
+            return;
+        }
+        if (pool.prob == null) {
+            // Floyd: for j in [n-k, n), pick t in [0, j]; take j instead if t was already taken
+            for (int j = n - k; j < n; j++) {
+                Material t = mats[rng.nextInt(j + 1)];
+                out.add(contains(out, start, t) ? mats[j] : t);
+            }
+            return;
+        }
+        // Weighted successive sampling: redraw repeats, bounded so heavily skewed weights can't spin for long
+        int attempts = k * 32;
+        while (out.size() - start < k && attempts-- > 0) {
+            Material t = mats[pool.pick(rng)];
+            if (!contains(out, start, t)) out.add(t);
+        }
+        // Rare fallback: exact weighted draws over what is left, one linear scan per remaining pick
+        while (out.size() - start < k) {
+            double left = 0.0;
+            for (int j = 0; j < n; j++) if (!contains(out, start, mats[j])) left += pool.weights[j];
+            double r = rng.nextDouble() * left;
+            int pick = -1;
+            for (int j = 0; j < n; j++) {
+                if (contains(out, start, mats[j])) continue;
+                pick = j;
+                r -= pool.weights[j];
+                if (r < 0.0) break;
+            }
+            out.add(mats[pick]);
+        }
+    }
+
+    private static boolean contains(List<Material> out, int from, Material m) {
+        for (int i = from; i < out.size(); i++) if (out.get(i) == m) return true;
+        return false;
+    }
+
+    /** In-place Fisher–Yates shuffle driven by {@code rng}. */
+    static <T> void shuffle(List<T> list, SplittableRandom rng) {
+        for (int i = list.size() - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            T tmp = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, tmp);
+        }
+    }
+
+    // Vose's alias method: O(n) build, O(1) draw
+    private static void buildAlias(double[] weights, double[] prob, int[] alias) {
+        int n = weights.length;
+        double sum = 0.0;
+        for (double w : weights) sum += w;
+        if (sum <= 0.0) {
+            Arrays.fill(prob, 1.0);
+            for (int i = 0; i < n; i++) alias[i] = i;
+            return;
+        }
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int ns = 0, nl = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1.0) small[ns++] = i; else large[nl++] = i;
+        }
+        while (ns > 0 && nl > 0) {
+            int s = small[--ns];
+            int l = large[--nl];
+            prob[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0) small[ns++] = l; else large[nl++] = l;
+        }
+        while (nl > 0) { int l = large[--nl]; prob[l] = 1.0; alias[l] = l; }
+        while (ns > 0) { int s = small[--ns]; prob[s] = 1.0; alias[s] = s; }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.bodia.shoptrader.shop;
+
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Result of one enchant roll: which enchantments at which levels, plus the quality score the price
+ * multiplier is derived from. Immutable and independent of any {@link ItemStack}, so it can be kept
+ * with a drop and applied to as many copies (templates, display icons, purchases) as needed.
+ */
+public final class EnchantRoll {
+
+    public static final EnchantRoll NONE = new EnchantRoll(new Enchantment[0], new int[0], 0.0);
+
+    private final Enchantment[] enchants;
+    private final int[] levels;
+    public final double quality; // sum of level / max level over the rolled enchants; higher = better
+
+    EnchantRoll(Enchantment[] enchants, int[] levels, double quality) {
+        this.enchants = enchants;
+        this.levels = levels;
+        this.quality = quality;
+    }
+
+    public int size() {
+        return enchants.length;
+    }
+
+    public Enchantment enchant(int i) {
+        return enchants[i];
+    }
+
+    public int level(int i) {
+        return levels[i];
+    }
+
+    /** Adds the rolled enchantments to {@code it} and returns it. */
+    public ItemStack applyTo(ItemStack it) {
+        for (int i = 0; i < enchants.length; i++) {
+            try { it.addUnsafeEnchantment(enchants[i], levels[i]); } catch (Throwable ignore) {}
+        }
+        return it;
+    }
+}
@@ -0,0 +1,43 @@
+package com.bodia.shoptrader.shop;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Per-material unit counts of an inventory, taken in one pass with no pricing. For callers that only need
+ * "how many of X" (quest progress); use {@link Catalog#quote} when prices are needed as well.
+ */
+public final class InventoryCounts {
+
+    private final Material[] materials; // distinct non-air materials in slot order
+    private final int[] held;
+    private final int distinct;
+
+    private InventoryCounts(Material[] materials, int[] held, int distinct) {
+        this.materials = materials;
+        this.held = held;
+        this.distinct = distinct;
+    }
+
+    public static InventoryCounts of(ItemStack[] contents) {
+        int n = contents.length;
+        Material[] materials = new Material[n];
+        int[] held = new int[n];
+        int distinct = 0;
+        for (ItemStack it : contents) {
+            if (it == null || it.getType() == Material.AIR) continue;
+            Material m = it.getType();
+            int d = 0;
+            while (d < distinct && materials[d] != m) d++;
+            if (d == distinct) materials[distinct++] = m;
+            held[d] += it.getAmount();
+        }
+        return new InventoryCounts(materials, held, distinct);
+    }
+
+    /** Units of {@code m} in the counted contents. */
+    public int count(Material m) {
+        for (int i = 0; i < distinct; i++) if (materials[i] == m) return held[i];
+        return 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.bodia.shoptrader.shop;
+
+import org.bukkit.Material;
+
+/**
+ * Result of {@link Catalog#quote}: per-slot sell prices for a whole inventory, priced in one pass
+ * against a single catalog snapshot, plus per-material sold units. For plain counts use {@link InventoryCounts}.
+ * Slot arrays are parallel to the quoted contents; material arrays hold the first {@link #distinct} entries.
+ */
+public final class InventoryQuote {
+
+    public final double[] slotPrices;   // 0.0 for empty or unsellable slots
+    public final boolean[] sellable;
+    public final double total;
+
+    private final Material[] materials; // distinct non-air materials in slot order
+    private final int[] sold;           // units in sellable stacks
+    private final int distinct;
+
+    InventoryQuote(double[] slotPrices, boolean[] sellable, double total,
+                   Material[] materials, int[] sold, int distinct) {
+        this.slotPrices = slotPrices;
+        this.sellable = sellable;
+        this.total = total;
+        this.materials = materials;
+        this.sold = sold;
+        this.distinct = distinct;
+    }
+
+    public int distinct() { return distinct; }
+    public Material materialAt(int i) { return materials[i]; }
+    public int soldAt(int i) { return sold[i]; }
+}
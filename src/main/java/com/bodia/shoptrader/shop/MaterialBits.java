@@ -0,0 +1,52 @@
+package com.bodia.shoptrader.shop;
+
+/**
+ * Bitsets over {@link org.bukkit.Material#ordinal()} stored as plain {@code long[]}.
+ * Sets are built once per catalog snapshot and never mutated afterwards; queries combine them into fresh arrays.
+ */
+final class MaterialBits {
+
+    static final int WORDS = (MaterialTable.MATERIALS.length + 63) >>> 6;
+
+    private MaterialBits() {}
+
+    static long[] empty() {
+        return new long[WORDS];
+    }
+
+    static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /** {@code target |= other} */
+    static void or(long[] target, long[] other) {
+        for (int w = 0; w < WORDS; w++) target[w] |= other[w];
+    }
+
+    /** {@code target &= other} */
+    static void and(long[] target, long[] other) {
+        for (int w = 0; w < WORDS; w++) target[w] &= other[w];
+    }
+
+    static int cardinality(long[] bits) {
+        int n = 0;
+        for (long w : bits) n += Long.bitCount(w);
+        return n;
+    }
+
+    /** Ordinal of the next set bit at or after {@code from}, or -1. */
+    static int next(long[] bits, int from) {
+        int w = from >>> 6;
+        if (w >= WORDS) return -1;
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == WORDS) return -1;
+            word = bits[w];
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bodia.shoptrader.shop;
+
+import com.bodia.shoptrader.model.Category;
+import com.bodia.shoptrader.model.Tier;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Multi-criteria catalog query for {@link Catalog#find}.
+ * Values within one criterion are OR-ed (any listed tier), criteria are AND-ed together.
+ * Price bounds apply to the current dynamic buy price, multiplier bounds to the current shop multiplier.
+ */
+public final class MaterialFilter {
+
+    final Set<Tier> tiers = EnumSet.noneOf(Tier.class);
+    final Set<Category> categories = EnumSet.noneOf(Category.class);
+    double minPrice = 0.0;
+    double maxPrice = Double.POSITIVE_INFINITY;
+    double minMultiplier = 0.0;
+    double maxMultiplier = Double.POSITIVE_INFINITY;
+
+    public static MaterialFilter category(Category cat) {
+        return new MaterialFilter().categories(cat);
+    }
+
+    public MaterialFilter tiers(Tier... values) {
+        for (Tier t : values) tiers.add(t);
+        return this;
+    }
+
+    public MaterialFilter categories(Category... values) {
+        for (Category c : values) categories.add(c);
+        return this;
+    }
+
+    public MaterialFilter priceBetween(double min, double max) {
+        this.minPrice = min;
+        this.maxPrice = max;
+        return this;
+    }
+
+    public MaterialFilter multiplierBetween(double min, double max) {
+        this.minMultiplier = min;
+        this.maxMultiplier = max;
+        return this;
+    }
+
+    boolean hasPriceBounds() {
+        return minPrice > 0.0 || maxPrice != Double.POSITIVE_INFINITY;
+    }
+
+    boolean hasMultiplierBounds() {
+        return minMultiplier > 0.0 || maxMultiplier != Double.POSITIVE_INFINITY;
+    }
+}
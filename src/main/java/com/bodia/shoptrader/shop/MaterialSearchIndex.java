@@ -0,0 +1,187 @@
+package com.bodia.shoptrader.shop;
+
+import org.bukkit.Material;
+
+import java.util.*;
+
+/**
+ * Name index over every item material, built once per catalog load.
+ * Each material is indexed under its normalized name ("diamond sword") plus any configured
+ * aliases (search.aliases). Prefix lookups binary-search a sorted array of word-start suffixes;
+ * fuzzy lookups score trigram overlap (Dice coefficient) from posting lists.
+ */
+final class MaterialSearchIndex {
+
+    private static final double MIN_FUZZY_SCORE = 0.35;
+
+    private final Material[] docs;
+    private final int[] nameLength;       // primary key length per doc, for tie-breaking
+    // Keys: primary name and aliases, each pointing at a doc
+    private final int[] keyDoc;
+    private final int[] keyGrams;         // distinct trigram count per key
+    // Every word-start suffix of every key, sorted for prefix search
+    private final String[] suffixes;
+    private final int[] suffixKey;
+    private final boolean[] suffixAtStart; // suffix is the whole key
+    private final Map<Long, int[]> postings; // trigram -> sorted key ids
+
+    MaterialSearchIndex(Map<String, List<String>> aliases) {
+        List<Material> docList = new ArrayList<>();
+        for (Material m : MaterialTable.MATERIALS) {
+            if (m == Material.AIR || !m.isItem() || m.name().startsWith("LEGACY_")) continue;
+            docList.add(m);
+        }
+        this.docs = docList.toArray(new Material[0]);
+        this.nameLength = new int[docs.length];
+
+        List<String> keys = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int d = 0; d < docs.length; d++) {
+            String name = normalize(docs[d].name());
+            nameLength[d] = name.length();
+            keys.add(name);
+            owners.add(d);
+            List<String> extra = aliases.get(docs[d].name());
+            if (extra == null) continue;
+            for (String alias : extra) {
+                String a = normalize(alias);
+                if (a.isEmpty()) continue;
+                keys.add(a);
+                owners.add(d);
+            }
+        }
+        int k = keys.size();
+        this.keyDoc = new int[k];
+        this.keyGrams = new int[k];
+
+        List<Object[]> sfx = new ArrayList<>();
+        Map<Long, List<Integer>> grams = new HashMap<>();
+        for (int i = 0; i < k; i++) {
+            String key = keys.get(i);
+            keyDoc[i] = owners.get(i);
+            for (int p = 0; p < key.length(); p++) {
+                if (p == 0 || key.charAt(p - 1) == ' ') sfx.add(new Object[]{key.substring(p), i, p == 0});
+            }
+            long[] g = trigrams(key);
+            keyGrams[i] = g.length;
+            for (long gram : g) grams.computeIfAbsent(gram, x -> new ArrayList<>()).add(i);
+        }
+        sfx.sort(Comparator.comparing(o -> (String) o[0]));
+        this.suffixes = new String[sfx.size()];
+        this.suffixKey = new int[sfx.size()];
+        this.suffixAtStart = new boolean[sfx.size()];
+        for (int i = 0; i < sfx.size(); i++) {
+            suffixes[i] = (String) sfx.get(i)[0];
+            suffixKey[i] = (Integer) sfx.get(i)[1];
+            suffixAtStart[i] = (Boolean) sfx.get(i)[2];
+        }
+        this.postings = new HashMap<>(grams.size() * 2);
+        for (Map.Entry<Long, List<Integer>> e : grams.entrySet()) {
+            postings.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /** Best matches for {@code query}: exact, then prefix/word-prefix, then fuzzy trigram matches. */
+    List<Material> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) return Collections.emptyList();
+        double[] score = new double[docs.length];
+
+        int from = lowerBound(q);
+        for (int i = from; i < suffixes.length && suffixes[i].startsWith(q); i++) {
+            int d = keyDoc[suffixKey[i]];
+            double s = suffixes[i].length() == q.length() && suffixAtStart[i] ? 3.0 : suffixAtStart[i] ? 2.0 : 1.5;
+            if (s > score[d]) score[d] = s;
+        }
+
+        long[] qg = trigrams(q);
+        if (qg.length > 0) {
+            int[] shared = new int[keyDoc.length];
+            for (long g : qg) {
+                int[] list = postings.get(g);
+                if (list == null) continue;
+                for (int key : list) shared[key]++;
+            }
+            for (int key = 0; key < shared.length; key++) {
+                if (shared[key] == 0) continue;
+                double dice = 2.0 * shared[key] / (qg.length + keyGrams[key]);
+                int d = keyDoc[key];
+                if (dice >= MIN_FUZZY_SCORE && dice > score[d]) score[d] = dice;
+            }
+        }
+        return top(score, limit);
+    }
+
+    /** Material names (lowercase, as typed in commands) whose name or alias has a word starting with {@code prefix}. */
+    List<String> complete(String prefix, int limit) {
+        String q = normalize(prefix);
+        List<String> whole = new ArrayList<>();
+        List<String> inner = new ArrayList<>();
+        Set<Material> seen = new HashSet<>();
+        for (int i = lowerBound(q); i < suffixes.length && suffixes[i].startsWith(q); i++) {
+            Material m = docs[keyDoc[suffixKey[i]]];
+            if (!seen.add(m)) continue;
+            (suffixAtStart[i] ? whole : inner).add(m.name().toLowerCase(Locale.ROOT));
+            if (whole.size() >= limit) break;
+        }
+        whole.addAll(inner);
+        return whole.size() > limit ? whole.subList(0, limit) : whole;
+    }
+
+    private List<Material> top(double[] score, int limit) {
+        List<Integer> hits = new ArrayList<>();
+        for (int d = 0; d < score.length; d++) if (score[d] > 0.0) hits.add(d);
+        hits.sort((a, b) -> {
+            int c = Double.compare(score[b], score[a]);
+            if (c != 0) return c;
+            c = Integer.compare(nameLength[a], nameLength[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        List<Material> out = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) out.add(docs[hits.get(i)]);
+        return out;
+    }
+
+    private int lowerBound(String q) {
+        int lo = 0, hi = suffixes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (suffixes[mid].compareTo(q) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    static String normalize(String s) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = true; // collapse runs and trim the leading edge
+        for (int i = 0; i < s.length(); i++) {
+            char c = Character.toLowerCase(s.charAt(i));
+            if (c == '_' || Character.isWhitespace(c)) {
+                if (!space) sb.append(' ');
+                space = true;
+            } else {
+                sb.append(c);
+                space = false;
+            }
+        }
+        int n = sb.length();
+        if (n > 0 && sb.charAt(n - 1) == ' ') sb.setLength(n - 1);
+        return sb.toString();
+    }
+
+    // Distinct trigrams of " key ", three UTF-16 chars packed into a long
+    private static long[] trigrams(String key) {
+        String p = " " + key + " ";
+        if (p.length() < 3) return new long[0];
+        long[] out = new long[p.length() - 2];
+        int n = 0;
+        for (int i = 0; i + 3 <= p.length(); i++) {
+            long g = ((long) p.charAt(i) << 32) | ((long) p.charAt(i + 1) << 16) | p.charAt(i + 2);
+            boolean dup = false;
+            for (int j = 0; j < n; j++) if (out[j] == g) { dup = true; break; }
+            if (!dup) out[n++] = g;
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,112 @@
+package com.bodia.shoptrader.shop;
+
+import com.bodia.shoptrader.model.Category;
+import com.bodia.shoptrader.model.Tier;
+import org.bukkit.Material;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable per-material classification indexed by {@link Material#ordinal()}.
+ * Built once per catalog load so price quotes, sell previews and drop rolls
+ * never repeat the name-based heuristics below.
+ */
+final class MaterialTable {
+
+    static final Material[] MATERIALS = Material.values();
+    private static final Category[] CATEGORIES = Category.values();
+    private static final Tier[] TIERS = Tier.values();
+
+    private final byte[] category;
+    private final byte[] tier;
+    private final boolean[] useful;
+    private final double[] yieldFactor;
+    private final double[] unitPrice; // base unit shop price before dynamic multipliers
+
+    private MaterialTable(int size) {
+        this.category = new byte[size];
+        this.tier = new byte[size];
+        this.useful = new boolean[size];
+        this.yieldFactor = new double[size];
+        this.unitPrice = new double[size];
+    }
+
+    static MaterialTable build(Map<Tier, Double> tierPrices, double garbagePrice, double spawnEggPrice,
+                               double luckyBlockPrice, Map<String, Double> yieldFactors) {
+        MaterialTable t = new MaterialTable(MATERIALS.length);
+        for (Material m : MATERIALS) {
+            int i = m.ordinal();
+            Category cat = classifyCategory(m);
+            Tier tier = classifyTier(m);
+            double factor = yieldFactors.getOrDefault(m.name().toUpperCase(Locale.ROOT), 1.0);
+            t.category[i] = (byte) cat.ordinal();
+            t.tier[i] = (byte) tier.ordinal();
+            t.useful[i] = classifyUseful(m);
+            t.yieldFactor[i] = factor;
+            t.unitPrice[i] = switch (cat) {
+                case SPAWN_EGGS -> spawnEggPrice;
+                case LUCKY_BLOCKS -> luckyBlockPrice;
+                case GARBAGE -> garbagePrice;
+                default -> {
+                    double base = tierPrices.getOrDefault(tier, 100.0);
+                    double adjusted = Math.max(0.01, base * factor);
+                    yield Math.round(adjusted * 100.0) / 100.0;
+                }
+            };
+        }
+        return t;
+    }
+
+    Category category(Material m) { return CATEGORIES[category[m.ordinal()]]; }
+    Tier tier(Material m) { return TIERS[tier[m.ordinal()]]; }
+    boolean isUseful(Material m) { return useful[m.ordinal()]; }
+    double yieldFactor(Material m) { return yieldFactor[m.ordinal()]; }
+    double unitPrice(Material m) { return unitPrice[m.ordinal()]; }
+
+    // --- Name-based heuristics, evaluated once per material at build time ---
+
+    private static Category classifyCategory(Material m) {
+        String name = m.name();
+        if (name.endsWith("_HELMET") || name.endsWith("_CHESTPLATE") || name.endsWith("_LEGGINGS") || name.endsWith("_BOOTS") || name.equals("ELYTRA")) return Category.ARMORS;
+        if (name.endsWith("_SWORD") || name.endsWith("_AXE") || name.endsWith("_PICKAXE") || name.endsWith("_SHOVEL") || name.endsWith("_HOE") || name.equals("BOW") || name.equals("CROSSBOW") || name.equals("TRIDENT") || name.equals("SHIELD")) return Category.TOOLS_WEAPONS;
+        if (name.endsWith("SPAWN_EGG")) return Category.SPAWN_EGGS;
+        if (m.isBlock()) return Category.BLOCKS;
+        return Category.GARBAGE;
+    }
+
+    private static Tier classifyTier(Material m) {
+        String n = m.name();
+        if (n.startsWith("NETHERITE") || n.contains("NETHERITE") || n.equals("ENCHANTED_GOLDEN_APPLE") || n.equals("ELYTRA") ) return Tier.LEGENDARY;
+        if (n.startsWith("DIAMOND") || n.contains("DIAMOND") || n.equals("TRIDENT") || n.contains("SHULKER") || n.equals("GOLDEN_APPLE") || n.contains("ENDER")) return Tier.EPIC;
+        if (n.startsWith("IRON") || n.startsWith("GOLDEN") || n.contains("GOLD") || n.equals("BOW") || n.equals("CROSSBOW") || n.equals("SHIELD")) return Tier.UNCOMMON;
+        if (n.startsWith("CHAINMAIL")) return Tier.UNCOMMON;
+        if (n.startsWith("WOODEN") || n.startsWith("LEATHER")) return Tier.COMMON;
+        // Blocks: classify some special
+        if (m == Material.NETHERITE_BLOCK || m == Material.BEACON || m == Material.ENCHANTING_TABLE || m == Material.BEDROCK || m ==  Material.ANCIENT_DEBRIS) return Tier.LEGENDARY;
+        if (m == Material.DIAMOND_BLOCK ) return Tier.EPIC;
+        if (m == Material.IRON_BLOCK || m == Material.ANVIL) return Tier.UNCOMMON;
+        return Tier.GARBAGE;
+    }
+
+    // Heuristic filter for useful items: include equipment and functional blocks, exclude misc/garbage
+    private static boolean classifyUseful(Material m) {
+        String n = m.name();
+        if (n.endsWith("SPAWN_EGG")) return false;
+        if (n.endsWith("_HELMET") || n.endsWith("_CHESTPLATE") || n.endsWith("_LEGGINGS") || n.endsWith("_BOOTS") || n.equals("ELYTRA")) return true;
+        if (n.endsWith("_SWORD") || n.endsWith("_AXE") || n.endsWith("_PICKAXE") || n.endsWith("_SHOVEL") || n.endsWith("_HOE") || n.equals("BOW") || n.equals("CROSSBOW") || n.equals("TRIDENT") || n.equals("SHIELD") || n.equals("FISHING_ROD") || n.equals("SHEARS")) return true;
+        if (m.isBlock()) {
+            // Whitelist functional blocks
+            return switch (m) {
+                case ENCHANTING_TABLE, ANVIL, GRINDSTONE, SMITHING_TABLE, CARTOGRAPHY_TABLE, STONECUTTER, LOOM,
+                     FURNACE, BLAST_FURNACE, SMOKER, BREWING_STAND, BEACON, ENDER_CHEST,
+                     SHULKER_BOX, WHITE_SHULKER_BOX, ORANGE_SHULKER_BOX, MAGENTA_SHULKER_BOX, LIGHT_BLUE_SHULKER_BOX,
+                     YELLOW_SHULKER_BOX, LIME_SHULKER_BOX, PINK_SHULKER_BOX, GRAY_SHULKER_BOX, LIGHT_GRAY_SHULKER_BOX,
+                     CYAN_SHULKER_BOX, PURPLE_SHULKER_BOX, BLUE_SHULKER_BOX, BROWN_SHULKER_BOX, GREEN_SHULKER_BOX,
+                     RED_SHULKER_BOX, BLACK_SHULKER_BOX, HOPPER, GOLDEN_APPLE, ENCHANTED_GOLDEN_APPLE  -> true;
+                default -> false;
+            };
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.bodia.shoptrader.shop;
+
+import com.bodia.shoptrader.model.ShopItem;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A fully prepared rotation: items picked, family duplicates dropped, enchantments rolled and the
+ * enchant price multiplier fixed. Built off the main thread by {@link DropManager} and published
+ * by a single reference swap; never mutated afterwards. Everything derives from {@link #seed}.
+ */
+public final class PreparedDrop {
+
+    public final long seed;
+    private final List<ShopItem> items;
+    private final EnchantRoll[] enchants;
+    private final ItemStack[] give;           // templates; clone before handing to a player
+    private final double[] enchantMultiplier; // applied on top of the live dynamic price
+
+    private PreparedDrop(long seed, List<ShopItem> items, EnchantRoll[] enchants, ItemStack[] give, double[] enchantMultiplier) {
+        this.seed = seed;
+        this.items = items;
+        this.enchants = enchants;
+        this.give = give;
+        this.enchantMultiplier = enchantMultiplier;
+    }
+
+    static PreparedDrop prepare(Catalog catalog, DropManager.RotationSettings rs, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        List<ShopItem> rolled = catalog.rollDrop(rs.counts, rng);
+        List<ShopItem> items = new ArrayList<>(rolled.size());
+        List<EnchantRoll> rolls = new ArrayList<>(rolled.size());
+        Set<String> usedGroups = new HashSet<>();
+        for (ShopItem si : rolled) {
+            String group = DropEnchanter.groupKeyFor(si.getMaterial());
+            if (group != null && !usedGroups.add(group)) continue; // enforce uniqueness for certain families
+            items.add(si);
+            rolls.add(DropEnchanter.roll(si.getMaterial(), rng));
+        }
+        int n = items.size();
+        EnchantRoll[] enchants = rolls.toArray(new EnchantRoll[0]);
+        ItemStack[] give = new ItemStack[n];
+        double[] m = new double[n];
+        for (int i = 0; i < n; i++) {
+            give[i] = enchants[i].applyTo(new ItemStack(items.get(i).getMaterial()));
+            m[i] = Math.min(rs.enchantCap, 1.0 + rs.enchantCoefficient * enchants[i].quality);
+        }
+        return new PreparedDrop(seed, List.copyOf(items), enchants, give, m);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public List<ShopItem> items() {
+        return items;
+    }
+
+    public ShopItem item(int i) {
+        return items.get(i);
+    }
+
+    /** Enchantments rolled for slot {@code i}. */
+    public EnchantRoll enchants(int i) {
+        return enchants[i];
+    }
+
+    /** Shared enchanted template for slot {@code i}; do not mutate. */
+    public ItemStack template(int i) {
+        return give[i];
+    }
+
+    public double enchantMultiplier(int i) {
+        return enchantMultiplier[i];
+    }
+
+    /** Current price of entry {@code i}: live dynamic price scaled by its enchant multiplier. */
+    public double price(Catalog catalog, int i) {
+        double base = catalog.dynamicShopPrice(items.get(i).getMaterial());
+        return Math.round(base * enchantMultiplier[i] * 100.0) / 100.0;
+    }
+}
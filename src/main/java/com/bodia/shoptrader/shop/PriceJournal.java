@@ -0,0 +1,322 @@
+package com.bodia.shoptrader.shop;
+
+import org.bukkit.Material;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Crash-safe persistence for {@link PricingState}.
+ * <p>
+ * Every purchase/sale appends one fixed-size record holding the absolute post-update state of that
+ * material, so replay is idempotent (last record wins) and independent of the pricing parameters.
+ * Multipliers are stored decayed to the record's timestamp, which becomes the restored update time.
+ * Records are written by a dedicated thread with batched fsync; the journal is periodically folded
+ * into a snapshot (keyed by material name, so it survives Material ordinal changes across server
+ * updates) and truncated. A generation counter shared by both files makes the snapshot/truncate
+ * sequence safe against a crash in between.
+ */
+final class PriceJournal {
+
+    private static final int JOURNAL_MAGIC = 0x53544A31;  // "STJ1"
+    private static final int SNAPSHOT_MAGIC_V1 = 0x53545331; // "STS1"
+    private static final int SNAPSHOT_MAGIC = 0x53545332;    // "STS2": adds the snapshot timestamp
+    private static final int HEADER_BYTES = 4 + 8 + 8;    // magic, material fingerprint, generation
+    private static final int RECORD_BYTES = 2 + 8 + 8 + 4 + 8; // ordinal, shop, sell, buys, timestamp
+
+    private static final class Entry {
+        final int ordinal;
+        final double shop;
+        final double sell;
+        final int buys;
+        final long at;
+        Entry(int ordinal, double shop, double sell, int buys, long at) {
+            this.ordinal = ordinal; this.shop = shop; this.sell = sell; this.buys = buys; this.at = at;
+        }
+    }
+
+    private final Logger log;
+    private final PricingState state;
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final long fingerprint = materialFingerprint();
+    private final ArrayBlockingQueue<Entry> queue;
+    private final long fsyncIntervalMillis;
+    private final int compactEveryRecords;
+    private final long snapshotIntervalMillis;
+
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean overflowed; // queue was full: next cycle folds full state into a snapshot
+
+    // Writer-thread state
+    private FileChannel channel;
+    private long generation;
+    private int journalRecords;
+    private long fsyncCount;
+
+    // Write-path cost, measured on the caller thread
+    private final LongAdder appendCount = new LongAdder();
+    private final LongAdder appendNanos = new LongAdder();
+
+    PriceJournal(Logger log, File dataFolder, PricingState state, long fsyncIntervalMillis,
+                 int compactEveryRecords, long snapshotIntervalMillis, int queueCapacity) {
+        this.log = log;
+        this.state = state;
+        this.journalPath = new File(dataFolder, "prices.journal").toPath();
+        this.snapshotPath = new File(dataFolder, "prices.snapshot").toPath();
+        this.fsyncIntervalMillis = Math.max(10L, fsyncIntervalMillis);
+        this.compactEveryRecords = Math.max(100, compactEveryRecords);
+        this.snapshotIntervalMillis = Math.max(1000L, snapshotIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(64, queueCapacity));
+    }
+
+    /** Loads snapshot + journal into the pricing state and starts the writer thread. Call once at startup. */
+    void start() {
+        long t0 = System.nanoTime();
+        int records = 0;
+        try {
+            Files.createDirectories(journalPath.getParent());
+            records = replay();
+            openForAppend(records);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to load price journal; dynamic prices start fresh", e);
+            try {
+                openForAppend(-1);
+            } catch (IOException e2) {
+                log.log(Level.WARNING, "Price journal disabled: " + e2.getMessage());
+                return;
+            }
+        }
+        long ms = (System.nanoTime() - t0) / 1_000_000L;
+        log.info("Replayed price journal (" + Math.max(0, records) + " records) in " + ms + " ms.");
+
+        running = true;
+        writer = new Thread(this::runWriter, "ShopTrader-PriceJournal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queues the current state of {@code m}. Never blocks; on overflow the next snapshot covers it. */
+    void append(Material m) {
+        if (!running) return;
+        long t0 = System.nanoTime();
+        int i = m.ordinal();
+        long now = System.currentTimeMillis();
+        Entry e = new Entry(i, state.shopMultiplierAt(i, now), state.sellMultiplierAt(i, now), state.buysAt(i), now);
+        if (!queue.offer(e)) overflowed = true;
+        appendNanos.add(System.nanoTime() - t0);
+        appendCount.increment();
+    }
+
+    /** Drains pending records, writes a final snapshot and stops the writer thread. */
+    void close() {
+        if (writer == null) return;
+        running = false;
+        try {
+            writer.join(10_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        long n = appendCount.sum();
+        double avg = n == 0 ? 0.0 : (double) appendNanos.sum() / n;
+        log.info(String.format(java.util.Locale.ROOT, "Price journal closed: %d appends, avg %.0f ns/append, %d fsyncs.", n, avg, fsyncCount));
+    }
+
+    // --- Writer thread ---
+
+    private void runWriter() {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_BYTES * 256);
+        long lastSync = System.currentTimeMillis();
+        long lastSnapshot = lastSync;
+        boolean unsynced = false;
+        try {
+            // Never interrupt this thread: an interrupt closes the FileChannel mid-write.
+            while (running || !queue.isEmpty()) {
+                Entry e = queue.poll(fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+                while (e != null) {
+                    if (!buf.hasRemaining()) flush(buf);
+                    buf.putShort((short) e.ordinal).putDouble(e.shop).putDouble(e.sell).putInt(e.buys).putLong(e.at);
+                    journalRecords++;
+                    e = queue.poll();
+                }
+                if (buf.position() > 0) {
+                    flush(buf);
+                    unsynced = true;
+                }
+                long now = System.currentTimeMillis();
+                if (unsynced && now - lastSync >= fsyncIntervalMillis) {
+                    channel.force(false);
+                    fsyncCount++;
+                    lastSync = now;
+                    unsynced = false;
+                }
+                if (overflowed || journalRecords >= compactEveryRecords
+                        || (journalRecords > 0 && now - lastSnapshot >= snapshotIntervalMillis)) {
+                    compact();
+                    lastSnapshot = now;
+                    unsynced = false;
+                }
+            }
+            compact();
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Price journal writer stopped", e);
+            running = false;
+        } finally {
+            try { if (channel != null) channel.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private void flush(ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        buf.clear();
+    }
+
+    private void compact() throws IOException {
+        overflowed = false;
+        long next = generation + 1;
+        writeSnapshot(next);
+        // Snapshot is durable; the journal is now redundant. A crash before the header rewrite is
+        // harmless because replay skips journals older than the snapshot generation.
+        channel.truncate(0);
+        writeHeader(next);
+        channel.force(true);
+        fsyncCount++;
+        generation = next;
+        journalRecords = 0;
+    }
+
+    private void writeSnapshot(long gen) throws IOException {
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            Material[] mats = MaterialTable.MATERIALS;
+            long now = System.currentTimeMillis();
+            int[] touched = new int[state.size()];
+            int count = 0;
+            for (int i = 0; i < state.size(); i++) if (!state.isDefaultAt(i, now)) touched[count++] = i;
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(gen);
+            out.writeLong(now);
+            out.writeInt(count);
+            for (int k = 0; k < count; k++) {
+                int i = touched[k];
+                out.writeUTF(mats[i].name());
+                out.writeDouble(state.shopMultiplierAt(i, now));
+                out.writeDouble(state.sellMultiplierAt(i, now));
+                out.writeInt(state.buysAt(i));
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- Startup ---
+
+    /** Applies snapshot then journal; returns the number of journal records replayed. */
+    private int replay() throws IOException {
+        long snapshotGen = 0L;
+        if (Files.exists(snapshotPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+                int magic = in.readInt();
+                if (magic == SNAPSHOT_MAGIC || magic == SNAPSHOT_MAGIC_V1) {
+                    snapshotGen = in.readLong();
+                    long savedAt = magic == SNAPSHOT_MAGIC ? in.readLong() : System.currentTimeMillis();
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String name = in.readUTF();
+                        double shop = in.readDouble();
+                        double sell = in.readDouble();
+                        int buys = in.readInt();
+                        Material m = Material.getMaterial(name);
+                        if (m != null) state.restore(m.ordinal(), shop, sell, buys, savedAt);
+                    }
+                }
+            }
+        }
+        generation = snapshotGen;
+        if (!Files.exists(journalPath)) return -1;
+
+        try (FileChannel ch = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) return -1;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && ch.read(header) >= 0) {}
+            header.flip();
+            if (header.getInt() != JOURNAL_MAGIC) return -1;
+            if (header.getLong() != fingerprint) {
+                log.warning("Material list changed since the price journal was written; using snapshot only.");
+                return -1;
+            }
+            long journalGen = header.getLong();
+            if (journalGen < snapshotGen) return -1; // already folded into the snapshot
+
+            int limit = state.size();
+            int records = 0;
+            ByteBuffer buf = ByteBuffer.allocate(RECORD_BYTES * 1024);
+            while (ch.read(buf) > 0 || buf.position() > 0) {
+                buf.flip();
+                if (buf.remaining() < RECORD_BYTES) break; // torn tail from a crash mid-write
+                while (buf.remaining() >= RECORD_BYTES) {
+                    int ordinal = Short.toUnsignedInt(buf.getShort());
+                    double shop = buf.getDouble();
+                    double sell = buf.getDouble();
+                    int buys = buf.getInt();
+                    long at = buf.getLong();
+                    if (ordinal < limit) state.restore(ordinal, shop, sell, buys, at);
+                    records++;
+                }
+                buf.compact();
+            }
+            generation = journalGen;
+            return records;
+        }
+    }
+
+    /** Opens the journal for appending; {@code validRecords < 0} means start a fresh journal. */
+    private void openForAppend(int validRecords) throws IOException {
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (validRecords < 0) {
+            channel.truncate(0);
+            writeHeader(generation);
+            journalRecords = 0;
+        } else {
+            long end = HEADER_BYTES + (long) validRecords * RECORD_BYTES;
+            channel.truncate(end); // drop any torn tail
+            channel.position(end);
+            journalRecords = validRecords;
+        }
+        channel.force(true);
+    }
+
+    private void writeHeader(long gen) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(JOURNAL_MAGIC).putLong(fingerprint).putLong(gen).flip();
+        channel.position(0);
+        while (header.hasRemaining()) channel.write(header);
+    }
+
+    private static long materialFingerprint() {
+        long h = 1125899906842597L;
+        for (Material m : MaterialTable.MATERIALS) h = 31 * h + m.name().hashCode();
+        return h;
+    }
+}
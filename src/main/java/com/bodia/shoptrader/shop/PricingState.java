@@ -0,0 +1,148 @@
+package com.bodia.shoptrader.shop;
+
+import org.bukkit.Material;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dynamic pricing state keyed by {@link Material#ordinal()}.
+ * Multipliers are stored as raw double bits so quotes can be read from any thread
+ * without boxing, and updates are applied with CAS loops instead of locks.
+ * <p>
+ * Multipliers revert toward 1.0 with a configurable half-life. Decay is evaluated lazily on read
+ * from the per-material last-update timestamp, so idle materials cost nothing per tick.
+ */
+final class PricingState {
+
+    private static final long ONE_BITS = Double.doubleToRawLongBits(1.0);
+    private static final double LN2 = Math.log(2.0);
+
+    private final AtomicLongArray shopMultipliers; // affects what player pays
+    private final AtomicLongArray sellMultipliers; // affects what shop pays player
+    private final AtomicLongArray shopUpdatedAt;   // epoch millis of the stored shop multiplier
+    private final AtomicLongArray sellUpdatedAt;   // epoch millis of the stored sell multiplier
+    private final AtomicIntegerArray buysSinceAdjust;
+    // Smallest/largest shop multiplier ever stored (starting from 1.0). Decay only moves values toward 1.0,
+    // so every live shop multiplier lies within these, whatever the current config clamps or journal say.
+    private final AtomicLong shopLowBits = new AtomicLong(ONE_BITS);
+    private final AtomicLong shopHighBits = new AtomicLong(ONE_BITS);
+
+    private volatile double decayPerMilli; // ln2 / half-life; 0 disables mean reversion
+
+    PricingState(int size) {
+        this.shopMultipliers = new AtomicLongArray(size);
+        this.sellMultipliers = new AtomicLongArray(size);
+        this.shopUpdatedAt = new AtomicLongArray(size);
+        this.sellUpdatedAt = new AtomicLongArray(size);
+        this.buysSinceAdjust = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            shopMultipliers.set(i, ONE_BITS);
+            sellMultipliers.set(i, ONE_BITS);
+        }
+    }
+
+    void setHalfLifeMillis(long halfLifeMillis) {
+        this.decayPerMilli = halfLifeMillis > 0 ? LN2 / halfLifeMillis : 0.0;
+    }
+
+    double shopMultiplier(Material m) {
+        return shopMultiplierAt(m.ordinal(), System.currentTimeMillis());
+    }
+
+    double sellMultiplier(Material m) {
+        return sellMultiplierAt(m.ordinal(), System.currentTimeMillis());
+    }
+
+    /** Lower bound of every current shop multiplier. */
+    double shopMultiplierLow() {
+        return Double.longBitsToDouble(shopLowBits.get());
+    }
+
+    /** Upper bound of every current shop multiplier. */
+    double shopMultiplierHigh() {
+        return Double.longBitsToDouble(shopHighBits.get());
+    }
+
+    private void widenShopBounds(double v) {
+        long cur;
+        while (v < Double.longBitsToDouble(cur = shopLowBits.get())) {
+            if (shopLowBits.compareAndSet(cur, Double.doubleToRawLongBits(v))) break;
+        }
+        while (v > Double.longBitsToDouble(cur = shopHighBits.get())) {
+            if (shopHighBits.compareAndSet(cur, Double.doubleToRawLongBits(v))) break;
+        }
+    }
+
+    int incrementBuys(Material m) {
+        return buysSinceAdjust.incrementAndGet(m.ordinal());
+    }
+
+    int size() {
+        return shopMultipliers.length();
+    }
+
+    // --- Ordinal access for persistence (PriceJournal); values are decayed to 'now' ---
+
+    double shopMultiplierAt(int i, long now) {
+        return decayed(Double.longBitsToDouble(shopMultipliers.get(i)), shopUpdatedAt.get(i), now);
+    }
+
+    double sellMultiplierAt(int i, long now) {
+        return decayed(Double.longBitsToDouble(sellMultipliers.get(i)), sellUpdatedAt.get(i), now);
+    }
+
+    int buysAt(int i) {
+        return buysSinceAdjust.get(i);
+    }
+
+    boolean isDefaultAt(int i, long now) {
+        return buysSinceAdjust.get(i) == 0
+                && Math.abs(shopMultiplierAt(i, now) - 1.0) < 1e-6
+                && Math.abs(sellMultiplierAt(i, now) - 1.0) < 1e-6;
+    }
+
+    void restore(int i, double shop, double sell, int buys, long at) {
+        widenShopBounds(shop);
+        shopMultipliers.set(i, Double.doubleToRawLongBits(shop));
+        sellMultipliers.set(i, Double.doubleToRawLongBits(sell));
+        shopUpdatedAt.set(i, at);
+        sellUpdatedAt.set(i, at);
+        buysSinceAdjust.set(i, buys);
+    }
+
+    /** Multiplies the (decayed) shop multiplier by {@code factor}, clamped to [min, max]. Returns the new value. */
+    double scaleShop(Material m, double factor, double min, double max) {
+        double next = scale(shopMultipliers, shopUpdatedAt, m.ordinal(), factor, min, max);
+        widenShopBounds(next);
+        return next;
+    }
+
+    /** Multiplies the (decayed) sell multiplier by {@code factor}, clamped to [min, max]. Returns the new value. */
+    double scaleSell(Material m, double factor, double min, double max) {
+        return scale(sellMultipliers, sellUpdatedAt, m.ordinal(), factor, min, max);
+    }
+
+    private double scale(AtomicLongArray arr, AtomicLongArray stamps, int i, double factor, double min, double max) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            long curBits = arr.get(i);
+            double next = decayed(Double.longBitsToDouble(curBits), stamps.get(i), now) * factor;
+            if (next > max) next = max;
+            if (next < min) next = min;
+            if (arr.compareAndSet(i, curBits, Double.doubleToRawLongBits(next))) {
+                // Between these two stores an async reader may decay the new value from the previous
+                // stamp. Writers run on the main thread, so this only skews a concurrent quote once.
+                stamps.set(i, now);
+                return next;
+            }
+        }
+    }
+
+    private double decayed(double value, long updatedAt, long now) {
+        double k = decayPerMilli;
+        if (k <= 0.0 || value == 1.0 || now <= updatedAt) return value;
+        return 1.0 + (value - 1.0) * Math.exp(-k * (now - updatedAt));
+    }
+}
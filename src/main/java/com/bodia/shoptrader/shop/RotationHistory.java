@@ -0,0 +1,191 @@
+package com.bodia.shoptrader.shop;
+
+import com.bodia.shoptrader.model.Tier;
+import org.bukkit.Material;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Bounded ring buffer of past rotations for tuning counts and prices. Each rotation keeps its items as
+ * primitive arrays (material ordinal, tier, price at roll time, purchases, first purchase time), so a
+ * purchase is two array writes. Main thread only; exports work on {@link Rotation#copy() copies}.
+ */
+public final class RotationHistory {
+
+    private static final Tier[] TIERS = Tier.values();
+
+    public static final class Rotation {
+        public final String traderId;
+        public final long seed;
+        public final long rolledAt;
+        public final boolean personal;
+        final int[] materials;
+        final byte[] tiers;
+        final double[] prices;
+        final int[] purchases;
+        final long[] firstPurchaseAt; // epoch millis, 0 = not bought yet
+        int personalPurchases;        // purchases from per-player drops, which are not in the arrays above
+
+        private Rotation(String traderId, long seed, long rolledAt, boolean personal, int n) {
+            this.traderId = traderId;
+            this.seed = seed;
+            this.rolledAt = rolledAt;
+            this.personal = personal;
+            this.materials = new int[n];
+            this.tiers = new byte[n];
+            this.prices = new double[n];
+            this.purchases = new int[n];
+            this.firstPurchaseAt = new long[n];
+        }
+
+        public int size() {
+            return materials.length;
+        }
+
+        public Material material(int i) {
+            return MaterialTable.MATERIALS[materials[i]];
+        }
+
+        public Tier tier(int i) {
+            return TIERS[tiers[i]];
+        }
+
+        public double price(int i) {
+            return prices[i];
+        }
+
+        public int purchases(int i) {
+            return purchases[i];
+        }
+
+        /** Milliseconds from the roll to the first purchase of slot {@code i}, or -1 if it was never bought. */
+        public long timeToFirstPurchase(int i) {
+            return firstPurchaseAt[i] == 0L ? -1L : firstPurchaseAt[i] - rolledAt;
+        }
+
+        public int personalPurchases() {
+            return personalPurchases;
+        }
+
+        public int totalPurchases() {
+            int n = personalPurchases;
+            for (int p : purchases) n += p;
+            return n;
+        }
+
+        // Arrays that never change after the roll are shared; counters are copied
+        Rotation copy() {
+            return new Rotation(this, purchases.clone(), firstPurchaseAt.clone());
+        }
+
+        private Rotation(Rotation src, int[] purchases, long[] firstPurchaseAt) {
+            this.traderId = src.traderId;
+            this.seed = src.seed;
+            this.rolledAt = src.rolledAt;
+            this.personal = src.personal;
+            this.materials = src.materials;
+            this.tiers = src.tiers;
+            this.prices = src.prices;
+            this.purchases = purchases;
+            this.firstPurchaseAt = firstPurchaseAt;
+            this.personalPurchases = src.personalPurchases;
+        }
+    }
+
+    private final Rotation[] ring;
+    private int next;  // slot the next rotation is written to
+    private int count;
+
+    RotationHistory(int capacity) {
+        this.ring = new Rotation[Math.max(1, capacity)];
+    }
+
+    /** Records a freshly rolled drop, overwriting the oldest rotation when full. */
+    Rotation record(String traderId, PreparedDrop drop, boolean personal, Catalog catalog) {
+        int n = drop.size();
+        Rotation r = new Rotation(traderId, drop.seed, System.currentTimeMillis(), personal, n);
+        for (int i = 0; i < n; i++) {
+            r.materials[i] = drop.item(i).getMaterial().ordinal();
+            r.tiers[i] = (byte) drop.item(i).getTier().ordinal();
+            r.prices[i] = drop.price(catalog, i);
+        }
+        ring[next] = r;
+        next = (next + 1) % ring.length;
+        if (count < ring.length) count++;
+        return r;
+    }
+
+    static void purchase(Rotation r, int index) {
+        r.purchases[index]++;
+        if (r.firstPurchaseAt[index] == 0L) r.firstPurchaseAt[index] = System.currentTimeMillis();
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /** Up to {@code limit} rotations, newest first, optionally restricted to one trader. Live objects: read on the main thread. */
+    public List<Rotation> recent(String traderId, int limit) {
+        List<Rotation> out = new ArrayList<>(Math.min(limit, count));
+        for (int k = 1; k <= count && out.size() < limit; k++) {
+            Rotation r = ring[(next - k + ring.length) % ring.length];
+            if (traderId == null || traderId.equals(r.traderId)) out.add(r);
+        }
+        return out;
+    }
+
+    /** Copies of the recorded rotations (oldest first), safe to hand to another thread. */
+    public List<Rotation> snapshot(String traderId) {
+        List<Rotation> out = recent(traderId, count);
+        List<Rotation> copies = new ArrayList<>(out.size());
+        for (int i = out.size() - 1; i >= 0; i--) copies.add(out.get(i).copy());
+        return copies;
+    }
+
+    /** Writes one CSV row per rotation slot straight to {@code out}; nothing is buffered beyond the writer. */
+    public static void writeCsv(Writer out, List<Rotation> rotations) throws IOException {
+        out.write("trader,seed,rolled_at,personal,slot,material,tier,price_at_roll,purchases,first_purchase_seconds,personal_purchases\n");
+        for (Rotation r : rotations) {
+            for (int i = 0; i < r.size(); i++) {
+                long first = r.timeToFirstPurchase(i);
+                writeCsvField(out, r.traderId);
+                out.write(',');
+                out.write(Long.toString(r.seed));
+                out.write(',');
+                out.write(Long.toString(r.rolledAt));
+                out.write(',');
+                out.write(r.personal ? "true" : "false");
+                out.write(',');
+                out.write(Integer.toString(i));
+                out.write(',');
+                out.write(r.material(i).name());
+                out.write(',');
+                out.write(r.tier(i).name());
+                out.write(',');
+                out.write(String.format(Locale.ROOT, "%.2f", r.prices[i]));
+                out.write(',');
+                out.write(Integer.toString(r.purchases[i]));
+                out.write(',');
+                out.write(first < 0 ? "" : Long.toString(first / 1000L));
+                out.write(',');
+                out.write(Integer.toString(r.personalPurchases));
+                out.write('\n');
+            }
+        }
+    }
+
+    // RFC 4180 quoting, only when the value needs it
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,83 @@
+package com.bodia.shoptrader.shop;
+
+import com.bodia.shoptrader.model.ShopItem;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Drop state of one trader: its rotation settings, the live drop and the pre-rolled next one.
+ * Owned and driven by {@link DropManager}; viewers only read it.
+ */
+public final class TraderRotation {
+
+    private final String traderId;
+    final DropManager.RotationSettings settings;
+
+    // Double buffer: viewers read 'current'; 'next' is prepared asynchronously and swapped in at rotation time
+    volatile PreparedDrop current;
+    volatile PreparedDrop next;
+    int epoch; // bumped when the rotation is retired so late async results are discarded
+    long nextRollAtMillis;
+    // Personal mode: drops derived from (current seed, player) on first view; LRU-bounded, cleared on every roll
+    final Map<UUID, PreparedDrop> personalDrops;
+    RotationHistory.Rotation record; // history entry of 'current', updated on purchase
+
+    TraderRotation(String traderId, DropManager.RotationSettings settings) {
+        this.traderId = traderId;
+        this.settings = settings;
+        final int cap = settings.personalCacheSize;
+        this.personalDrops = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, PreparedDrop> eldest) {
+                return size() > cap;
+            }
+        };
+    }
+
+    public String traderId() {
+        return traderId;
+    }
+
+    public PreparedDrop getCurrent() {
+        return current;
+    }
+
+    /** Whether every player gets their own drop (see {@link DropManager#dropFor}). */
+    public boolean isPersonal() {
+        return settings.personal;
+    }
+
+    public List<ShopItem> getCurrentDrop() {
+        PreparedDrop d = current;
+        return d != null ? d.items() : Collections.emptyList();
+    }
+
+    public long getCurrentSeed() {
+        PreparedDrop d = current;
+        return d != null ? d.seed : 0L;
+    }
+
+    public long getSecondsRemaining() {
+        long diff = nextRollAtMillis - System.currentTimeMillis();
+        return Math.max(0L, diff / 1000L);
+    }
+
+    public int getRotationMinutes() {
+        return settings.rotationMinutes;
+    }
+
+    public int getCycleSeconds() {
+        return settings.cycleSeconds;
+    }
+
+    public int getCycleIndex() {
+        long total = settings.rotationMinutes * 60L;
+        long elapsed = total - getSecondsRemaining();
+        if (settings.cycleSeconds <= 0) return 0;
+        return (int) (elapsed / settings.cycleSeconds);
+    }
+}